@@ -27,8 +27,20 @@ public final class Config implements Serializable {
     public float quarterResolutionThreshold = 4.0f;
     public float eighthResolutionThreshold = 8.0f;
 
+    public int textureBudgetMegabytes = 256;
+    public int textureIdleSeconds = 60;
+    public int clientCacheMegabytes = 1024;
+    public int textureUploadMillisPerTick = 4;
+
+    public int imageWorkerThreads = 2;
+    public int serverImageCacheMegabytes = 512;
+    public int serverPayloadCacheMegabytes = 128;
+
     public int maxPacketsPerSecond = 40;
+    public int maxBytesPerSecond = 2 * 1024 * 1024;
+    public int maxBytesPerSecondPerPlayer = 256 * 1024;
     public int packetSize = 16 * 1024;
+    public boolean compressImageTransfer = true;
 
     public boolean testIfSpaceEmpty = false;
 
@@ -7,15 +7,19 @@ import immersive_paintings.network.s2c.*;
 
 public class Messages {
     public static void bootstrap() {
-        NetworkHandler.registerMessage(ImageRequest.class);
-        NetworkHandler.registerMessage(PaintingListMessage.class);
-        NetworkHandler.registerMessage(ImageResponse.class);
-        NetworkHandler.registerMessage(PaintingModifyRequest.class);
-        NetworkHandler.registerMessage(PaintingModifyMessage.class);
-        NetworkHandler.registerMessage(RegisterPaintingRequest.class);
-        NetworkHandler.registerMessage(PaintingDeleteRequest.class);
-        NetworkHandler.registerMessage(UploadPaintingRequest.class);
-        NetworkHandler.registerMessage(RegisterPaintingResponse.class);
-        NetworkHandler.registerMessage(OpenGuiRequest.class);
+        NetworkHandler.registerMessage(PaintingListMessage.class, PaintingListMessage::new);
+        NetworkHandler.registerMessage(ImageResponse.class, ImageResponse::new);
+        NetworkHandler.registerMessage(PaintingModifyRequest.class, PaintingModifyRequest::new);
+        NetworkHandler.registerMessage(PaintingModifyMessage.class, PaintingModifyMessage::new);
+        NetworkHandler.registerMessage(RegisterPaintingRequest.class, RegisterPaintingRequest::new);
+        NetworkHandler.registerMessage(PaintingDeleteRequest.class, PaintingDeleteRequest::new);
+        NetworkHandler.registerMessage(UploadPaintingRequest.class, UploadPaintingRequest::new);
+        NetworkHandler.registerMessage(RegisterPaintingResponse.class, RegisterPaintingResponse::new);
+        NetworkHandler.registerMessage(OpenGuiRequest.class, OpenGuiRequest::new);
+        NetworkHandler.registerMessage(ImageCancelRequest.class, ImageCancelRequest::new);
+        NetworkHandler.registerMessage(CatalogHelloMessage.class, CatalogHelloMessage::new);
+        NetworkHandler.registerMessage(CatalogRequest.class, CatalogRequest::new);
+        NetworkHandler.registerMessage(ImageBatchRequest.class, ImageBatchRequest::new);
+        NetworkHandler.registerMessage(ImageBatchResponse.class, ImageBatchResponse::new);
     }
 }
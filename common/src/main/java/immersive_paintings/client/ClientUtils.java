@@ -1,16 +1,39 @@
 package immersive_paintings.client;
 
 import immersive_paintings.resources.ByteImage;
+import immersive_paintings.util.ImageCompression;
 import net.minecraft.client.texture.NativeImage;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
 
 public class ClientUtils {
+    // writes whole rows straight into the native buffer instead of setting every pixel
     public static NativeImage byteImageToNativeImage(ByteImage image) {
-        NativeImage nativeImage = new NativeImage(image.getWidth(), image.getHeight(), false);
-        for (int x = 0; x < image.getWidth(); x++) {
-            for (int y = 0; y < image.getHeight(); y++) {
-                nativeImage.setColor(x, y, image.getABGR(x, y));
-            }
+        NativeImage nativeImage = new NativeImage(NativeImage.Format.RGBA, image.getWidth(), image.getHeight(), false);
+        IntBuffer buffer = getBuffer(nativeImage);
+        int[] row = new int[image.getWidth()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getABGR(0, y, row.length, 1, row, 0, row.length);
+            buffer.put(row);
         }
         return nativeImage;
     }
+
+    public static NativeImage payloadToNativeImage(ImageCompression.Payload payload) throws IOException {
+        NativeImage nativeImage = new NativeImage(NativeImage.Format.RGBA, payload.width(), payload.height(), false);
+        try {
+            ImageCompression.decodeABGR(payload, getBuffer(nativeImage));
+        } catch (IOException | RuntimeException e) {
+            nativeImage.close();
+            throw e;
+        }
+        return nativeImage;
+    }
+
+    // RGBA pixels read as native order ints are ABGR, the same layout NativeImage.setColor uses
+    private static IntBuffer getBuffer(NativeImage image) {
+        return MemoryUtil.memIntBuffer(image.pointer, image.getWidth() * image.getHeight());
+    }
 }
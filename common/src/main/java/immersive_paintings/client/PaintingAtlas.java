@@ -0,0 +1,85 @@
+package immersive_paintings.client;
+
+import com.mojang.blaze3d.platform.TextureUtil;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.texture.AbstractTexture;
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.util.Identifier;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+// packs small painting textures into shared pages so thumbnails and distant paintings share one texture and render layer
+public class PaintingAtlas {
+    public static final int PAGE_SIZE = 1024;
+    public static final int CELL_SIZE = 128;
+    private static final int CELLS_PER_ROW = PAGE_SIZE / CELL_SIZE;
+    private static final int CELLS = CELLS_PER_ROW * CELLS_PER_ROW;
+
+    private static final List<Page> pages = new ArrayList<>();
+
+    public static boolean fits(int width, int height) {
+        return width <= CELL_SIZE && height <= CELL_SIZE;
+    }
+
+    public static Region allocate(NativeImage image) {
+        Page page = null;
+        for (Page p : pages) {
+            if (p.used.cardinality() < CELLS) {
+                page = p;
+                break;
+            }
+        }
+        if (page == null) {
+            page = new Page();
+            pages.add(page);
+        }
+
+        int cell = page.used.nextClearBit(0);
+        page.used.set(cell);
+
+        int x = (cell % CELLS_PER_ROW) * CELL_SIZE;
+        int y = (cell / CELLS_PER_ROW) * CELL_SIZE;
+        page.texture.bindTexture();
+        image.upload(0, x, y, true);
+
+        return new Region(page, cell,
+                (float)x / PAGE_SIZE,
+                (float)y / PAGE_SIZE,
+                (float)(x + image.getWidth()) / PAGE_SIZE,
+                (float)(y + image.getHeight()) / PAGE_SIZE);
+    }
+
+    public static void free(Region region) {
+        Page page = region.page;
+        page.used.clear(region.cell);
+        if (page.used.isEmpty()) {
+            MinecraftClient.getInstance().getTextureManager().destroyTexture(page.identifier);
+            pages.remove(page);
+        }
+    }
+
+    public record Region(Page page, int cell, float u0, float v0, float u1, float v1) {
+        public Identifier getIdentifier() {
+            return page.identifier;
+        }
+    }
+
+    public static class Page {
+        private final PageTexture texture = new PageTexture();
+        private final Identifier identifier = MinecraftClient.getInstance().getTextureManager().registerDynamicTexture("immersive_painting_atlas", texture);
+        private final BitSet used = new BitSet(CELLS);
+    }
+
+    private static class PageTexture extends AbstractTexture {
+        PageTexture() {
+            TextureUtil.prepareImage(getGlId(), PAGE_SIZE, PAGE_SIZE);
+        }
+
+        @Override
+        public void load(ResourceManager manager) {
+        }
+    }
+}
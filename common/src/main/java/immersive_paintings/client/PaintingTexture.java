@@ -0,0 +1,18 @@
+package immersive_paintings.client;
+
+import com.mojang.blaze3d.platform.TextureUtil;
+import net.minecraft.client.texture.AbstractTexture;
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.resource.ResourceManager;
+
+// uploads once and frees the native image right away, unlike NativeImageBackedTexture which keeps a copy for re-uploads
+public class PaintingTexture extends AbstractTexture {
+    public PaintingTexture(NativeImage image) {
+        TextureUtil.prepareImage(getGlId(), image.getWidth(), image.getHeight());
+        image.upload(0, 0, 0, true);
+    }
+
+    @Override
+    public void load(ResourceManager manager) {
+    }
+}
@@ -14,6 +14,7 @@ import immersive_paintings.network.c2s.RegisterPaintingRequest;
 import immersive_paintings.network.c2s.UploadPaintingRequest;
 import immersive_paintings.resources.*;
 import immersive_paintings.util.FlowingText;
+import immersive_paintings.util.ImageCompression;
 import immersive_paintings.util.ImageManipulations;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.screen.Screen;
@@ -27,6 +28,7 @@ import net.minecraft.text.Text;
 import net.minecraft.text.TranslatableText;
 import net.minecraft.util.Formatting;
 import net.minecraft.util.Identifier;
+import net.minecraft.util.Util;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -37,12 +39,14 @@ import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Predicate;
 
 import static immersive_paintings.util.ImageManipulations.scanForPixelArtMultiple;
 import static immersive_paintings.util.Utils.identifierToTranslation;
 
 public class ImmersivePaintingScreen extends Screen {
     private static final int SCREENSHOTS_PER_PAGE = 5;
+    private static final long SEARCH_DELAY = 150;
     final int entityId;
     public final ImmersivePaintingEntity entity;
 
@@ -51,6 +55,9 @@ public class ImmersivePaintingScreen extends Screen {
     private int filteredWidth = 0;
     private int filteredHeight = 0;
     private final List<Identifier> filteredPaintings = new ArrayList<>();
+    private final PaintingSearchIndex.Search search = new PaintingSearchIndex.Search();
+    private long searchDeadline = -1;
+    private final List<Identifier> prefetched = new ArrayList<>();
 
     private int selectionPage;
     private Page page;
@@ -89,6 +96,28 @@ public class ImmersivePaintingScreen extends Screen {
         }
     }
 
+    @Override
+    public void tick() {
+        super.tick();
+
+        if (searchDeadline >= 0 && Util.getMeasuringTimeMs() >= searchDeadline) {
+            searchDeadline = -1;
+            updateSearch();
+        }
+
+        // repeated every tick, otherwise the requests time out as unused
+        for (Identifier identifier : prefetched) {
+            ClientPaintingManager.prefetch(identifier, Painting.Type.THUMBNAIL);
+        }
+    }
+
+    @Override
+    public void removed() {
+        super.removed();
+
+        ClientPaintingManager.cancelPrefetches();
+    }
+
     @Override
     public boolean shouldPause() {
         return false;
@@ -319,12 +348,13 @@ public class ImmersivePaintingScreen extends Screen {
 
                 addDrawableChild(new ButtonWidget(width / 2 + 5, height / 2 + 75, 80, 20, new TranslatableText("immersive_paintings.save"),
                         v -> {
-                            byte[] is = pixelatedImage.getBytes();
-                            int splits = (int)Math.ceil((double)is.length / Config.getInstance().packetSize);
+                            ImageCompression.Payload payload = ImageCompression.encode(pixelatedImage, Config.getInstance().compressImageTransfer);
+                            byte[] is = payload.data();
+                            int packetSize = Config.getInstance().packetSize;
+                            int splits = (int)Math.ceil((double)is.length / packetSize);
                             int split = 0;
-                            for (int i = 0; i < is.length; i += Config.getInstance().packetSize) {
-                                byte[] ints = Arrays.copyOfRange(is, i, Math.min(is.length, i + Config.getInstance().packetSize));
-                                LazyNetworkManager.sendServer(new UploadPaintingRequest(pixelatedImage.getWidth(), pixelatedImage.getHeight(), ints, split, splits));
+                            for (int i = 0; i < is.length; i += packetSize) {
+                                LazyNetworkManager.sendServer(new UploadPaintingRequest(payload, i, Math.min(packetSize, is.length - i), split, splits));
                                 split++;
                             }
 
@@ -356,8 +386,9 @@ public class ImmersivePaintingScreen extends Screen {
                 textFieldWidget.setMaxLength(64);
                 textFieldWidget.setSuggestion("search");
                 textFieldWidget.setChangedListener((s) -> {
+                    // typing only searches once it pauses
                     filteredString = s;
-                    updateSearch();
+                    searchDeadline = Util.getMeasuringTimeMs() + SEARCH_DELAY;
                     textFieldWidget.setSuggestion(null);
                 });
 
@@ -496,7 +527,7 @@ public class ImmersivePaintingScreen extends Screen {
                         tooltip.add(new TranslatableText("immersive_paintings.right_click_to_delete").formatted(Formatting.ITALIC).formatted(Formatting.GRAY));
                     }
 
-                    paintingWidgetList.add(addDrawableChild(new PaintingWidget(ClientPaintingManager.getPaintingTexture(identifier, Painting.Type.THUMBNAIL), (int)(width / 2 + (x - 3.5) * 48) - 24, height / 2 - 66 + y * 48, 46, 46,
+                    paintingWidgetList.add(addDrawableChild(new PaintingWidget(identifier, (int)(width / 2 + (x - 3.5) * 48) - 24, height / 2 - 66 + y * 48, 46, 46,
                             sender -> {
                                 entity.setMotive(identifier);
                                 NetworkHandler.sendToServer(new PaintingModifyRequest(entity));
@@ -514,6 +545,22 @@ public class ImmersivePaintingScreen extends Screen {
                 }
             }
         }
+
+        updatePrefetch();
+    }
+
+    // thumbnails of the neighbouring pages and the top results, so flipping pages does not wait for the server
+    private void updatePrefetch() {
+        prefetched.clear();
+        for (int p : new int[] {selectionPage + 1, selectionPage - 1, 0}) {
+            if (p != selectionPage) {
+                for (int i = Math.max(0, p * 24); i < Math.min(filteredPaintings.size(), (p + 1) * 24); i++) {
+                    if (!prefetched.contains(filteredPaintings.get(i))) {
+                        prefetched.add(filteredPaintings.get(i));
+                    }
+                }
+            }
+        }
     }
 
     private void rebuildScreenshots() {
@@ -528,7 +575,7 @@ public class ImmersivePaintingScreen extends Screen {
             if (i >= 0 && i < screenshots.size()) {
                 File file = screenshots.get(i);
                 Painting painting = new Painting(null, 16, 16, 16);
-                paintingWidgetList.add(addDrawableChild(new PaintingWidget(painting.thumbnail, (width / 2 + (x - SCREENSHOTS_PER_PAGE / 2) * 68) - 32, height / 2 + 15, 64, 48,
+                paintingWidgetList.add(addDrawableChild(new PaintingWidget(painting.getTexture(Painting.Type.THUMBNAIL), (width / 2 + (x - SCREENSHOTS_PER_PAGE / 2) * 68) - 32, height / 2 + 15, 64, 48,
                         (b) -> {
                             currentImage = ((PaintingWidget)b).thumbnail.image;
                             currentImagePixelZoomCache = -1;
@@ -548,8 +595,11 @@ public class ImmersivePaintingScreen extends Screen {
                     if (image != null) {
                         painting.width = image.getWidth();
                         painting.height = image.getHeight();
-                        painting.thumbnail.image = image;
-                        painting.thumbnail.textureIdentifier = identifier;
+                        Painting.Texture thumbnail = painting.getTexture(Painting.Type.THUMBNAIL);
+                        thumbnail.image = image;
+                        thumbnail.width = image.getWidth();
+                        thumbnail.height = image.getHeight();
+                        thumbnail.textureIdentifier = identifier;
                     }
                 };
                 service.submit(task);
@@ -562,6 +612,7 @@ public class ImmersivePaintingScreen extends Screen {
     public void setPage(Page page) {
         this.page = page;
         this.error = null;
+        this.prefetched.clear();
 
         if (page == Page.SELECTION_DATAPACKS) {
             filteredResolution = 32;
@@ -580,16 +631,14 @@ public class ImmersivePaintingScreen extends Screen {
         filteredPaintings.clear();
 
         String playerName = MinecraftClient.getInstance().player == null ? "" : MinecraftClient.getInstance().player.getGameProfile().getName();
-        filteredPaintings.addAll(ClientPaintingManager.getPaintings().entrySet().stream()
-                .filter(v -> page != Page.SELECTION_YOURS || Objects.equals(v.getValue().author, playerName) && !v.getValue().datapack)
-                .filter(v -> page != Page.SELECTION_PLAYERS || !Objects.equals(v.getValue().author, playerName) && !v.getValue().datapack)
-                .filter(v -> page != Page.SELECTION_DATAPACKS || v.getValue().datapack)
-                .filter(v -> v.getKey().toString().contains(filteredString))
-                .filter(v -> filteredResolution == 0 || v.getValue().resolution == filteredResolution)
-                .filter(v -> filteredWidth == 0 || v.getValue().width == filteredWidth)
-                .filter(v -> filteredHeight == 0 || v.getValue().height == filteredHeight)
-                .map(Map.Entry::getKey)
-                .toList());
+        Predicate<Painting> filter = switch (page) {
+            case SELECTION_YOURS -> p -> Objects.equals(p.author, playerName) && !p.datapack;
+            case SELECTION_PLAYERS -> p -> !Objects.equals(p.author, playerName) && !p.datapack;
+            case SELECTION_DATAPACKS -> p -> p.datapack;
+            default -> p -> true;
+        };
+        String author = page == Page.SELECTION_YOURS ? playerName : null;
+        filteredPaintings.addAll(search.run(filteredString, page, filter, author, filteredResolution, filteredWidth, filteredHeight));
 
         setSelectionPage(selectionPage);
     }
@@ -1,14 +1,17 @@
 package immersive_paintings.client.gui.widget;
 
 import com.mojang.blaze3d.systems.RenderSystem;
+import immersive_paintings.resources.ClientPaintingManager;
 import immersive_paintings.resources.Painting;
 import net.minecraft.client.gui.widget.ButtonWidget;
 import net.minecraft.client.render.GameRenderer;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.text.LiteralText;
+import net.minecraft.util.Identifier;
 
 public class PaintingWidget extends ButtonWidget {
     public final Painting.Texture thumbnail;
+    private final Identifier identifier;
     private final PressAction onPressRight;
     private int button;
 
@@ -16,6 +19,23 @@ public class PaintingWidget extends ButtonWidget {
         super(x, y, width, height, new LiteralText("Painting"), onPress, tooltipSupplier);
         this.onPressRight = onPressRight;
         this.thumbnail = thumbnail;
+        this.identifier = null;
+    }
+
+    // looks the thumbnail up every frame, which keeps its request alive and picks it up once it arrives
+    public PaintingWidget(Identifier identifier, int x, int y, int width, int height, PressAction onPress, PressAction onPressRight, TooltipSupplier tooltipSupplier) {
+        super(x, y, width, height, new LiteralText("Painting"), onPress, tooltipSupplier);
+        this.onPressRight = onPressRight;
+        this.thumbnail = ClientPaintingManager.getPaintingTexture(identifier, Painting.Type.THUMBNAIL, ClientPaintingManager.PRIORITY_GUI);
+        this.identifier = identifier;
+    }
+
+    private Painting.Texture getThumbnail() {
+        if (identifier == null) {
+            return thumbnail;
+        } else {
+            return ClientPaintingManager.getPaintingTexture(identifier, Painting.Type.THUMBNAIL, ClientPaintingManager.PRIORITY_GUI);
+        }
     }
 
     @Override
@@ -36,6 +56,8 @@ public class PaintingWidget extends ButtonWidget {
 
     @Override
     public void renderButton(MatrixStack matrices, int mouseX, int mouseY, float delta) {
+        Painting.Texture thumbnail = getThumbnail();
+
         RenderSystem.setShader(GameRenderer::getPositionTexShader);
         RenderSystem.setShaderTexture(0, thumbnail.textureIdentifier);
         RenderSystem.setShaderColor(1.0f, 1.0f, 1.0f, alpha);
@@ -44,15 +66,18 @@ public class PaintingWidget extends ButtonWidget {
         RenderSystem.enableDepthTest();
 
         matrices.push();
-        int tw = thumbnail.image == null ? 32 : thumbnail.image.getWidth();
-        int th = thumbnail.image == null ? 32 : thumbnail.image.getHeight();
+        int tw = thumbnail.width == 0 ? 32 : thumbnail.width;
+        int th = thumbnail.height == 0 ? 32 : thumbnail.height;
         float scale = Math.min((float)width / tw, (float)height / th);
         if (isHovered()) {
             scale *= 1.1;
         }
         matrices.translate(x + (this.width - tw * scale) / 2, y + (this.height - th * scale) / 2, 0.0f);
         matrices.scale(scale, scale, 1.0f);
-        drawTexture(matrices, 0, 0, 0, 0, tw, th, tw, th);
+        // atlas textures only cover a region of a larger page
+        int pw = Math.round(tw / (thumbnail.u1 - thumbnail.u0));
+        int ph = Math.round(th / (thumbnail.v1 - thumbnail.v0));
+        drawTexture(matrices, 0, 0, thumbnail.u0 * pw, thumbnail.v0 * ph, tw, th, pw, ph);
         matrices.pop();
 
         if (isHovered()) {
@@ -0,0 +1,121 @@
+package immersive_paintings.client.render;
+
+import immersive_paintings.Main;
+import immersive_paintings.resources.ObjectLoader;
+import net.minecraft.util.Identifier;
+import owens.oobjloader.FlatMesh;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// canvas and frame geometry baked once per size into interleaved x, y, z, u, v, nx, ny, nz floats
+public class PaintingMeshes {
+    public static final int STRIDE = 8;
+
+    private static final Identifier CANVAS = Main.locate("objects/canvas.obj");
+    private static final float[] EMPTY = new float[0];
+
+    private static final Map<MeshKey, float[]> meshes = new HashMap<>();
+
+    // the canvas' UVs span 0 to 1 and are mapped to the texture region at render time
+    public static float[] getCanvas(int width, int height, boolean framed) {
+        return meshes.computeIfAbsent(new MeshKey(CANVAS, width, height, framed), key -> bakeCanvas(width, height, framed ? 1.0f : 0.0f));
+    }
+
+    public static float[] getFrame(Identifier frame, int width, int height) {
+        return meshes.computeIfAbsent(new MeshKey(frame, width, height, true), key -> bakeFrame(frame, width, height));
+    }
+
+    public static void clear() {
+        meshes.clear();
+    }
+
+    private static float[] bakeCanvas(float width, float height, float margin) {
+        FlatMesh mesh = ObjectLoader.objects.get(CANVAS);
+        if (mesh == null) {
+            return EMPTY;
+        }
+
+        MeshBuilder builder = new MeshBuilder();
+        float[] v = mesh.vertices;
+        for (int index : mesh.toQuadIndices()) {
+            int o = index * FlatMesh.STRIDE;
+            builder.add(v[o] * (width - margin * 2),
+                    v[o + 1] * (height - margin * 2),
+                    v[o + 2] * 16.0f,
+                    v[o + 3] * (width - margin * 2) / width + margin / width,
+                    (1.0f - v[o + 4]) * (height - margin * 2) / height + margin / height,
+                    v[o + 5], v[o + 6], v[o + 7]);
+        }
+        return builder.build();
+    }
+
+    private static float[] bakeFrame(Identifier frame, float width, float height) {
+        MeshBuilder builder = new MeshBuilder();
+
+        FlatMesh faces = getFaces(frame, "bottom");
+        for (int x = 0; x < width / 16; x++) {
+            float u = width == 16 ? 0.75f : (x == 0 ? 0.0f : x == width / 16 - 1 ? 0.5f : 0.25f);
+            builder.add(faces, x * 16 - (width - 16) / 2, -(height - 16) / 2, u);
+        }
+        faces = getFaces(frame, "top");
+        for (int x = 0; x < width / 16; x++) {
+            float u = width == 16 ? 0.75f : (x == 0 ? 0.0f : x == width / 16 - 1 ? 0.5f : 0.25f);
+            builder.add(faces, x * 16 - (width - 16) / 2, (height - 16) / 2, u);
+        }
+        faces = getFaces(frame, "right");
+        for (int y = 0; y < height / 16; y++) {
+            builder.add(faces, (width - 16) / 2, y * 16 - (height - 16) / 2, 0.25f);
+        }
+        faces = getFaces(frame, "left");
+        for (int y = 0; y < height / 16; y++) {
+            builder.add(faces, -(width - 16) / 2, y * 16 - (height - 16) / 2, 0.25f);
+        }
+
+        return builder.build();
+    }
+
+    private static FlatMesh getFaces(Identifier frame, String part) {
+        Identifier id = new Identifier(frame.getNamespace(), frame.getPath() + "/" + part + ".obj");
+        return ObjectLoader.objects.get(id);
+    }
+
+    record MeshKey(Identifier object, int width, int height, boolean framed) {
+    }
+
+    private static class MeshBuilder {
+        private float[] data = new float[STRIDE * 64];
+        private int size;
+
+        void add(float x, float y, float z, float u, float v, float nx, float ny, float nz) {
+            if (size + STRIDE > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size++] = x;
+            data[size++] = y;
+            data[size++] = z;
+            data[size++] = u;
+            data[size++] = v;
+            data[size++] = nx;
+            data[size++] = ny;
+            data[size++] = nz;
+        }
+
+        // a frame segment, offset in the painting plane and shifted to its column of the frame texture
+        void add(FlatMesh mesh, float ox, float oy, float u) {
+            if (mesh == null) {
+                return;
+            }
+            float[] v = mesh.vertices;
+            for (int index : mesh.toQuadIndices()) {
+                int o = index * FlatMesh.STRIDE;
+                add(v[o] + ox, v[o + 1] + oy, v[o + 2], v[o + 3] * 0.25f + u, 1.0f - v[o + 4], v[o + 5], v[o + 6], v[o + 7]);
+            }
+        }
+
+        float[] build() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
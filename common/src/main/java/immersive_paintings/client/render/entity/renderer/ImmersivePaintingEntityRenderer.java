@@ -1,10 +1,9 @@
 package immersive_paintings.client.render.entity.renderer;
 
 import immersive_paintings.Config;
-import immersive_paintings.Main;
+import immersive_paintings.client.render.PaintingMeshes;
 import immersive_paintings.entity.ImmersivePaintingEntity;
 import immersive_paintings.resources.ClientPaintingManager;
-import immersive_paintings.resources.ObjectLoader;
 import immersive_paintings.resources.Painting;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayerEntity;
@@ -14,10 +13,6 @@ import net.minecraft.client.render.entity.EntityRendererFactory;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.*;
-import owens.oobjloader.Face;
-import owens.oobjloader.FaceVertex;
-
-import java.util.List;
 
 public class ImmersivePaintingEntityRenderer extends EntityRenderer<ImmersivePaintingEntity> {
     public ImmersivePaintingEntityRenderer(EntityRendererFactory.Context ctx) {
@@ -36,6 +31,10 @@ public class ImmersivePaintingEntityRenderer extends EntityRenderer<ImmersivePai
 
     @Override
     public Identifier getTexture(ImmersivePaintingEntity paintingEntity) {
+        return getPaintingTexture(paintingEntity).textureIdentifier;
+    }
+
+    private Painting.Texture getPaintingTexture(ImmersivePaintingEntity paintingEntity) {
         MinecraftClient client = MinecraftClient.getInstance();
         Config config = Config.getInstance();
 
@@ -50,7 +49,10 @@ public class ImmersivePaintingEntityRenderer extends EntityRenderer<ImmersivePai
                 : pixelDensity > config.halfResolutionThreshold ? Painting.Type.HALF
                 : Painting.Type.FULL;
 
-        return ClientPaintingManager.getPaintingTexture(paintingEntity.getMotive(), type).textureIdentifier;
+        // only paintings inside the view frustum get rendered, closer ones are streamed first
+        int priority = 1 + (int)distance;
+
+        return ClientPaintingManager.getPaintingTexture(paintingEntity.getMotive(), type, priority);
     }
 
     private void renderPainting(MatrixStack matrices, VertexConsumerProvider vertexConsumerProvider, ImmersivePaintingEntity entity) {
@@ -84,80 +86,25 @@ public class ImmersivePaintingEntityRenderer extends EntityRenderer<ImmersivePai
 
         boolean hasFrame = !entity.getFrame().getPath().equals("none");
 
-        //canvas
-        vertexConsumer = vertexConsumerProvider.getBuffer(RenderLayer.getEntityCutout(getTexture(entity)));
-        renderFaces("objects/canvas.obj", posMat, normMat, vertexConsumer, light, width, height, hasFrame ? 1.0f : 0.0f);
+        //canvas, small textures share atlas pages and therefore render layers
+        Painting.Texture texture = getPaintingTexture(entity);
+        vertexConsumer = vertexConsumerProvider.getBuffer(RenderLayer.getEntityCutout(texture.textureIdentifier));
+        float[] canvas = PaintingMeshes.getCanvas(width, height, hasFrame);
+        float du = texture.u1 - texture.u0;
+        float dv = texture.v1 - texture.v0;
+        for (int v = 0; v < canvas.length; v += PaintingMeshes.STRIDE) {
+            vertex(posMat, normMat, vertexConsumer, canvas[v], canvas[v + 1], canvas[v + 2],
+                    texture.u0 + canvas[v + 3] * du, texture.v0 + canvas[v + 4] * dv,
+                    canvas[v + 5], canvas[v + 6], canvas[v + 7], light);
+        }
 
         if (hasFrame) {
             vertexConsumer = vertexConsumerProvider.getBuffer(RenderLayer.getEntityCutout(entity.getMaterial()));
-            renderFrame(entity.getFrame(), posMat, normMat, vertexConsumer, light, width, height);
-        }
-    }
-
-    private void renderFaces(String name, Matrix4f posMat, Matrix3f normMat, VertexConsumer vertexConsumer, int light, float width, float height, float margin) {
-        List<Face> faces = ObjectLoader.objects.get(Main.locate(name));
-        for (Face face : faces) {
-            for (FaceVertex v : face.vertices) {
-                vertex(posMat,
-                        normMat,
-                        vertexConsumer,
-                        v.v.x * (width - margin * 2),
-                        v.v.y * (height - margin * 2),
-                        v.v.z * 16.0f,
-                        v.t.u * (width - margin * 2) / width + margin / width,
-                        (1.0f - v.t.v) * (height - margin * 2) / height + margin / height,
-                        v.n.x,
-                        v.n.y,
-                        v.n.z,
-                        light);
-            }
-        }
-    }
-
-    private List<Face> getFaces(Identifier frame, String part) {
-        Identifier id = new Identifier(frame.getNamespace(), frame.getPath() + "/" + part + ".obj");
-        if (ObjectLoader.objects.containsKey(id)) {
-            return ObjectLoader.objects.get(id);
-        } else {
-            return List.of();
-        }
-    }
-
-    private void renderFrame(Identifier frame, Matrix4f posMat, Matrix3f normMat, VertexConsumer vertexConsumer, int light, float width, float height) {
-        List<Face> faces = getFaces(frame, "bottom");
-        for (int x = 0; x < width / 16; x++) {
-            float u = width == 16 ? 0.75f : (x == 0 ? 0.0f : x == width / 16 - 1 ? 0.5f : 0.25f);
-            for (Face face : faces) {
-                for (FaceVertex v : face.vertices) {
-                    vertex(posMat, normMat, vertexConsumer, v.v.x + x * 16 - (width - 16) / 2, v.v.y - (height - 16) / 2, v.v.z, v.t.u * 0.25f + u, (1.0f - v.t.v), v.n.x, v.n.y, v.n.z, light);
-                }
-            }
-        }
-        faces = getFaces(frame, "top");
-        for (int x = 0; x < width / 16; x++) {
-            float u = width == 16 ? 0.75f : (x == 0 ? 0.0f : x == width / 16 - 1 ? 0.5f : 0.25f);
-            for (Face face : faces) {
-                for (FaceVertex v : face.vertices) {
-                    vertex(posMat, normMat, vertexConsumer, v.v.x + x * 16 - (width - 16) / 2, v.v.y + (height - 16) / 2, v.v.z, v.t.u * 0.25f + u, (1.0f - v.t.v), v.n.x, v.n.y, v.n.z, light);
-                }
-            }
-        }
-        faces = getFaces(frame, "right");
-        for (int y = 0; y < height / 16; y++) {
-            float u = 0.25f;
-            for (Face face : faces) {
-                for (FaceVertex v : face.vertices) {
-                    vertex(posMat, normMat, vertexConsumer, v.v.x + (width - 16) / 2, v.v.y + y * 16 - (height - 16) / 2, v.v.z, v.t.u * 0.25f + u, (1.0f - v.t.v), v.n.x, v.n.y, v.n.z, light);
-                }
-            }
-        }
-        faces = getFaces(frame, "left");
-        for (int y = 0; y < height / 16; y++) {
-            float u = 0.25f;
-            for (Face face : faces) {
-                for (FaceVertex v : face.vertices) {
-                    vertex(posMat, normMat, vertexConsumer, v.v.x - (width - 16) / 2, v.v.y + y * 16 - (height - 16) / 2, v.v.z, v.t.u * 0.25f + u, (1.0f - v.t.v), v.n.x, v.n.y, v.n.z, light);
-                }
+            float[] frame = PaintingMeshes.getFrame(entity.getFrame(), width, height);
+            for (int v = 0; v < frame.length; v += PaintingMeshes.STRIDE) {
+                vertex(posMat, normMat, vertexConsumer, frame[v], frame[v + 1], frame[v + 2],
+                        frame[v + 3], frame[v + 4],
+                        frame[v + 5], frame[v + 6], frame[v + 7], light);
             }
         }
     }
@@ -1,36 +1,15 @@
 package immersive_paintings.cobalt.network;
 
-import net.minecraft.client.MinecraftClient;
 import net.minecraft.entity.player.PlayerEntity;
-import net.minecraft.network.Packet;
 import net.minecraft.network.PacketByteBuf;
-import net.minecraft.network.listener.ClientPlayPacketListener;
 
-import java.io.*;
+public interface Message {
+    void encode(PacketByteBuf b);
 
-public interface Message extends Serializable {
-    static Message decode(PacketByteBuf b) {
-        byte[] data = new byte[b.readableBytes()];
-        b.readBytes(data);
-
-        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data))) {
-            return (Message)ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            throw new RuntimeException("SneakyThrows", e);
-        }
-    }
-
-    default void encode(PacketByteBuf b) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
-            oos.writeObject(this);
-        } catch (IOException e) {
-            throw new RuntimeException("SneakyThrows", e);
-        }
+    void receive(PlayerEntity e);
 
-        b.writeBytes(baos.toByteArray());
+    // approximate encoded size in bytes, used for bandwidth accounting
+    default int getSize() {
+        return 64;
     }
-
-    void receive(PlayerEntity e);
 }
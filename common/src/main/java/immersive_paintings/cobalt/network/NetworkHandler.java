@@ -1,12 +1,15 @@
 package immersive_paintings.cobalt.network;
 
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.network.ServerPlayerEntity;
 
+import java.util.function.Function;
+
 public abstract class NetworkHandler {
     private static Impl INSTANCE;
 
-    public static <T extends Message> void registerMessage(Class<T> msg) {
-        INSTANCE.registerMessage(msg);
+    public static <T extends Message> void registerMessage(Class<T> msg, Function<PacketByteBuf, T> decoder) {
+        INSTANCE.registerMessage(msg, decoder);
     }
 
     public static void sendToServer(Message m) {
@@ -22,7 +25,7 @@ public abstract class NetworkHandler {
             INSTANCE = this;
         }
 
-        public abstract <T extends Message> void registerMessage(Class<T> msg);
+        public abstract <T extends Message> void registerMessage(Class<T> msg, Function<PacketByteBuf, T> decoder);
 
         public abstract void sendToServer(Message m);
 
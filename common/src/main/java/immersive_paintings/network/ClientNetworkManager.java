@@ -4,19 +4,17 @@ import immersive_paintings.client.gui.ImmersivePaintingScreen;
 import immersive_paintings.cobalt.network.NetworkHandler;
 import immersive_paintings.entity.ImmersivePaintingEntity;
 import immersive_paintings.network.c2s.PaintingModifyRequest;
+import immersive_paintings.network.s2c.CatalogHelloMessage;
 import immersive_paintings.network.s2c.OpenGuiRequest;
 import immersive_paintings.network.s2c.PaintingListMessage;
 import immersive_paintings.network.s2c.PaintingModifyMessage;
 import immersive_paintings.network.s2c.RegisterPaintingResponse;
-import immersive_paintings.resources.ClientPaintingManager;
-import immersive_paintings.resources.Painting;
+import immersive_paintings.resources.ClientCatalog;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.text.TranslatableText;
 import net.minecraft.util.Identifier;
 
-import java.util.Map;
-
 public class ClientNetworkManager implements NetworkManager {
     @Override
     public void handleOpenGuiRequest(OpenGuiRequest request) {
@@ -25,18 +23,14 @@ public class ClientNetworkManager implements NetworkManager {
         }
     }
 
+    @Override
+    public void handleCatalogHello(CatalogHelloMessage message) {
+        ClientCatalog.handleHello(message);
+    }
+
     @Override
     public void handlePaintingListResponse(PaintingListMessage response) {
-        if (response.shouldClear()) {
-            ClientPaintingManager.getPaintings().clear();
-        }
-        for (Map.Entry<Identifier, Painting> entry : response.getPaintings().entrySet()) {
-            if (entry.getValue() == null) {
-                ClientPaintingManager.getPaintings().remove(entry.getKey());
-            } else {
-                ClientPaintingManager.getPaintings().put(entry.getKey(), entry.getValue());
-            }
-        }
+        ClientCatalog.handleList(response);
 
         if (MinecraftClient.getInstance().currentScreen instanceof ImmersivePaintingScreen screen) {
             screen.refreshPage();
@@ -0,0 +1,71 @@
+package immersive_paintings.network;
+
+import immersive_paintings.cobalt.network.Message;
+import immersive_paintings.network.s2c.ImageBatchResponse;
+import immersive_paintings.network.s2c.ImageResponse;
+import immersive_paintings.resources.Painting;
+import immersive_paintings.util.ImageCompression;
+import net.minecraft.util.Identifier;
+
+// one image transfer session for a single player
+// it exists from the request on, segments are created on demand once the payload is ready so a transfer can still be reordered or dropped
+public class ImageTransfer {
+    private static int nextId = 0;
+
+    final int id;
+    final Identifier identifier;
+    final Painting.Type type;
+    int priority;
+
+    private ImageCompression.Payload payload;
+    private int packetSize;
+    private int segments;
+    private int segment;
+    boolean cancelled;
+
+    public ImageTransfer(Identifier identifier, Painting.Type type, int priority) {
+        this.id = nextId++;
+        this.identifier = identifier;
+        this.type = type;
+        this.priority = priority;
+    }
+
+    boolean matches(Identifier identifier, Painting.Type type) {
+        return this.identifier.equals(identifier) && this.type == type;
+    }
+
+    void setPayload(ImageCompression.Payload payload, int packetSize) {
+        this.payload = payload;
+        this.packetSize = packetSize;
+        this.segments = Math.max(1, (int)Math.ceil((double)payload.data().length / packetSize));
+    }
+
+    boolean isReady() {
+        return payload != null;
+    }
+
+    boolean hasNext() {
+        return segment < segments;
+    }
+
+    // a transfer which has not started and fits into one packet can share it with others
+    boolean isWhole() {
+        return segment == 0 && segments == 1;
+    }
+
+    // the share of a batched response this transfer takes
+    int getPackedSize() {
+        return ImageBatchResponse.getEntrySize(identifier, payload.data().length);
+    }
+
+    ImageBatchResponse.Entry takeWhole() {
+        segment = segments;
+        return new ImageBatchResponse.Entry(identifier, type, payload);
+    }
+
+    Message next() {
+        int offset = segment * packetSize;
+        int length = Math.min(packetSize, payload.data().length - offset);
+        return new ImageResponse(id, identifier, type, payload, offset, length, segment++, segments);
+    }
+}
@@ -3,24 +3,107 @@ package immersive_paintings.network;
 import immersive_paintings.Config;
 import immersive_paintings.cobalt.network.Message;
 import immersive_paintings.cobalt.network.NetworkHandler;
+import immersive_paintings.network.s2c.ImageBatchResponse;
+import immersive_paintings.resources.Painting;
+import immersive_paintings.util.ImageCompression;
 import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 
 public class LazyNetworkManager {
     private static final List<LazyPacket> serverQueue = new LinkedList<>();
-    private static final List<LazyPacket> clientQueue = new LinkedList<>();
+
+    // one queue per player, served round-robin so a single large transfer can't starve everyone else
+    private static final Map<UUID, PlayerQueue> clientQueues = new HashMap<>();
+    private static final Deque<PlayerQueue> activeClientQueues = new ArrayDeque<>();
 
     private static double cooldownClient = 0.0;
-    private static double cooldownServer = 0.0;
+    private static double budgetServer = 0.0;
 
     public static void sendServer(Message message) {
         serverQueue.add(new LazyPacket(message, null));
     }
 
     public static void sendClient(Message message, ServerPlayerEntity e) {
-        clientQueue.add(new LazyPacket(message, e));
+        PlayerQueue queue = getQueue(e);
+        queue.packets.add(message);
+        activate(queue);
+    }
+
+    // opens a transfer session, returns null if the image is already pending for this player, in which case only its priority is updated
+    public static ImageTransfer startTransfer(ServerPlayerEntity e, Identifier identifier, Painting.Type type, int priority) {
+        PlayerQueue queue = getQueue(e);
+        for (ImageTransfer t : queue.transfers) {
+            if (t.matches(identifier, type)) {
+                t.priority = priority;
+                return null;
+            }
+        }
+        ImageTransfer transfer = new ImageTransfer(identifier, type, priority);
+        queue.transfers.add(transfer);
+        return transfer;
+    }
+
+    public static void sendTransfer(ImageTransfer transfer, ImageCompression.Payload payload, ServerPlayerEntity e) {
+        if (transfer.cancelled) {
+            return;
+        }
+        if (payload == null) {
+            cancel(e, transfer.identifier, transfer.type);
+        } else {
+            transfer.setPayload(payload, Config.getInstance().packetSize);
+            activate(getQueue(e));
+        }
+    }
+
+    public static void cancel(ServerPlayerEntity e, Identifier identifier, Painting.Type type) {
+        PlayerQueue queue = clientQueues.get(e.getUuid());
+        if (queue != null) {
+            for (ImageTransfer t : queue.transfers) {
+                t.cancelled |= t.matches(identifier, type);
+            }
+            queue.transfers.removeIf(t -> t.cancelled);
+            removeIfIdle(queue);
+        }
+    }
+
+    // drops every transfer of a painting, e.g. after it got deleted
+    public static void cancel(Identifier identifier) {
+        for (PlayerQueue queue : List.copyOf(clientQueues.values())) {
+            for (ImageTransfer t : queue.transfers) {
+                t.cancelled |= t.identifier.equals(identifier);
+            }
+            queue.transfers.removeIf(t -> t.cancelled);
+            removeIfIdle(queue);
+        }
+    }
+
+    public static void disconnect(ServerPlayerEntity e) {
+        PlayerQueue queue = clientQueues.remove(e.getUuid());
+        if (queue != null) {
+            queue.transfers.forEach(t -> t.cancelled = true);
+            activeClientQueues.remove(queue);
+        }
+    }
+
+    private static PlayerQueue getQueue(ServerPlayerEntity e) {
+        PlayerQueue queue = clientQueues.computeIfAbsent(e.getUuid(), PlayerQueue::new);
+        queue.player = e;
+        return queue;
+    }
+
+    private static void activate(PlayerQueue queue) {
+        if (!queue.active) {
+            queue.active = true;
+            activeClientQueues.add(queue);
+        }
+    }
+
+    private static void removeIfIdle(PlayerQueue queue) {
+        if (queue.packets.isEmpty() && queue.transfers.isEmpty()) {
+            clientQueues.remove(queue.uuid, queue);
+        }
     }
 
     public static void tickClient() {
@@ -33,11 +116,43 @@ public class LazyNetworkManager {
     }
 
     public static void tickServer() {
-        cooldownServer = Math.max(cooldownServer - 1.0, 0.0);
-        if (!clientQueue.isEmpty() && cooldownServer < 1.0) {
-            LazyPacket packet = clientQueue.remove(0);
-            NetworkHandler.sendToPlayer(packet.message, packet.player);
-            cooldownServer += 20.0 / Config.getInstance().maxPacketsPerSecond;
+        Config config = Config.getInstance();
+
+        // budgets refill per tick and do not accumulate while idle, a packet may overdraw and is paid back in later ticks
+        double perTick = config.maxBytesPerSecond / 20.0;
+        double perTickPlayer = config.maxBytesPerSecondPerPlayer / 20.0;
+        budgetServer = Math.min(budgetServer + perTick, perTick);
+        for (PlayerQueue queue : activeClientQueues) {
+            queue.budget = Math.min(queue.budget + perTickPlayer, perTickPlayer);
+        }
+
+        // each visit sends at most one packet, players out of budget are skipped until everyone is
+        int skipped = 0;
+        while (budgetServer > 0 && skipped < activeClientQueues.size()) {
+            PlayerQueue queue = activeClientQueues.poll();
+
+            if (queue.player.isDisconnected()) {
+                disconnect(queue.player);
+                continue;
+            }
+
+            Message message = queue.budget > 0 ? queue.next() : null;
+            if (message != null) {
+                NetworkHandler.sendToPlayer(message, queue.player);
+                int size = message.getSize();
+                queue.budget -= size;
+                budgetServer -= size;
+                skipped = 0;
+            } else if (queue.budget > 0) {
+                // nothing ready to send, the queue is reactivated once a payload arrives
+                queue.active = false;
+                removeIfIdle(queue);
+                continue;
+            } else {
+                skipped++;
+            }
+
+            activeClientQueues.add(queue);
         }
     }
 
@@ -47,4 +162,71 @@ public class LazyNetworkManager {
 
     record LazyPacket(Message message, ServerPlayerEntity player) {
     }
+
+    static class PlayerQueue {
+        final UUID uuid;
+        final Queue<Message> packets = new ArrayDeque<>();
+        final List<ImageTransfer> transfers = new ArrayList<>();
+        ServerPlayerEntity player;
+        double budget = 0.0;
+        boolean active;
+
+        PlayerQueue(UUID uuid) {
+            this.uuid = uuid;
+        }
+
+        // plain messages go first, then one segment of the most urgent ready transfer, so a more urgent image preempts a running one
+        Message next() {
+            if (!packets.isEmpty()) {
+                return packets.poll();
+            }
+
+            ImageTransfer best = null;
+            for (ImageTransfer t : transfers) {
+                if (t.isReady() && (best == null || t.priority < best.priority)) {
+                    best = t;
+                }
+            }
+            if (best == null) {
+                return null;
+            }
+            if (best.isWhole()) {
+                return pack(best);
+            }
+
+            Message message = best.next();
+            if (!best.hasNext()) {
+                transfers.remove(best);
+            }
+            return message;
+        }
+
+        // fills the packet of a small image with further whole images, most urgent first
+        private Message pack(ImageTransfer best) {
+            int packetSize = Config.getInstance().packetSize;
+            List<ImageTransfer> candidates = new ArrayList<>();
+            for (ImageTransfer t : transfers) {
+                if (t != best && t.isReady() && t.isWhole()) {
+                    candidates.add(t);
+                }
+            }
+            candidates.sort(Comparator.comparingInt(t -> t.priority));
+
+            List<ImageTransfer> packed = new ArrayList<>();
+            packed.add(best);
+            int size = best.getPackedSize();
+            for (ImageTransfer t : candidates) {
+                if (size + t.getPackedSize() <= packetSize) {
+                    packed.add(t);
+                    size += t.getPackedSize();
+                }
+            }
+
+            transfers.removeAll(packed);
+            if (packed.size() == 1) {
+                return best.next();
+            }
+            return new ImageBatchResponse(packed.stream().map(ImageTransfer::takeWhole).toList());
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package immersive_paintings.network;
 
+import immersive_paintings.network.s2c.CatalogHelloMessage;
 import immersive_paintings.network.s2c.OpenGuiRequest;
 import immersive_paintings.network.s2c.PaintingListMessage;
 import immersive_paintings.network.s2c.PaintingModifyMessage;
@@ -8,6 +9,8 @@ import immersive_paintings.network.s2c.RegisterPaintingResponse;
 public interface NetworkManager {
     void handleOpenGuiRequest(OpenGuiRequest request);
 
+    void handleCatalogHello(CatalogHelloMessage message);
+
     void handlePaintingListResponse(PaintingListMessage response);
 
     void handlePaintingModifyMessage(PaintingModifyMessage message);
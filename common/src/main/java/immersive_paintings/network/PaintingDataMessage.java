@@ -2,15 +2,11 @@ package immersive_paintings.network;
 
 import immersive_paintings.cobalt.network.Message;
 import immersive_paintings.entity.ImmersivePaintingEntity;
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.Direction;
 
-import java.io.Serial;
-
 public abstract class PaintingDataMessage implements Message {
-    @Serial
-    private static final long serialVersionUID = -6510034100878125474L;
-
     final String motive;
     final String frame;
     final String material;
@@ -25,6 +21,23 @@ public abstract class PaintingDataMessage implements Message {
         this.facing = painting.getHorizontalFacing().ordinal();
     }
 
+    public PaintingDataMessage(PacketByteBuf b) {
+        this.motive = b.readString();
+        this.frame = b.readString();
+        this.material = b.readString();
+        this.entityId = b.readVarInt();
+        this.facing = b.readVarInt();
+    }
+
+    @Override
+    public void encode(PacketByteBuf b) {
+        b.writeString(motive);
+        b.writeString(frame);
+        b.writeString(material);
+        b.writeVarInt(entityId);
+        b.writeVarInt(facing);
+    }
+
     public Identifier getMotive() {
         return new Identifier(motive);
     }
@@ -0,0 +1,101 @@
+package immersive_paintings.network;
+
+import immersive_paintings.Main;
+import immersive_paintings.util.ImageCompression;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+// collects the segments of a SegmentedPaintingMessage directly into the final payload buffer
+// segments may arrive in any order, partial transfers nobody finishes are dropped after a timeout
+public class SegmentAssembler {
+    private static final long TIMEOUT = 60_000;
+
+    private final Map<String, Transfer> transfers = new HashMap<>();
+    private final IntSupplier maxWidth;
+    private final IntSupplier maxHeight;
+    private long lastEviction = System.currentTimeMillis();
+
+    public SegmentAssembler(IntSupplier maxWidth, IntSupplier maxHeight) {
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+    }
+
+    // returns the payload once the last missing segment arrived
+    public synchronized ImageCompression.Payload accept(String key, SegmentedPaintingMessage message) {
+        long now = System.currentTimeMillis();
+        if (now - lastEviction > TIMEOUT) {
+            transfers.values().removeIf(t -> now - t.lastUpdate > TIMEOUT);
+            lastEviction = now;
+        }
+
+        byte[] data = message.getData();
+        if (message.width <= 0 || message.height <= 0 || message.width > maxWidth.getAsInt() || message.height > maxHeight.getAsInt()) {
+            Main.LOGGER.warn("Rejected image transfer {}, size {}x{} exceeds the limit", key, message.width, message.height);
+            transfers.remove(key);
+            return null;
+        }
+        if (message.totalLength < 0 || message.totalLength > getMaxLength(message.width, message.height)
+                || message.segment < 0 || message.segment >= message.totalSegments || message.totalSegments > message.totalLength + 1
+                || message.position < 0 || message.position + data.length > message.totalLength) {
+            Main.LOGGER.warn("Rejected malformed image segment for {}", key);
+            transfers.remove(key);
+            return null;
+        }
+
+        // a different header or a repeated first segment means the sender started over
+        Transfer transfer = transfers.get(key);
+        if (transfer == null || !transfer.matches(message) || (message.segment == 0 && transfer.received.get(0))) {
+            transfer = new Transfer(message);
+            transfers.put(key, transfer);
+        }
+
+        if (!transfer.received.get(message.segment)) {
+            System.arraycopy(data, 0, transfer.data, message.position, data.length);
+            transfer.received.set(message.segment);
+            transfer.lastUpdate = now;
+        }
+
+        if (transfer.received.cardinality() == transfer.totalSegments) {
+            transfers.remove(key);
+            return new ImageCompression.Payload(transfer.format, transfer.width, transfer.height, transfer.data);
+        }
+        return null;
+    }
+
+    public synchronized void remove(String key) {
+        transfers.remove(key);
+    }
+
+    // raw size plus the worst case deflate and palette overhead
+    private static long getMaxLength(int width, int height) {
+        long raw = (long)width * height * 3;
+        return raw + raw / 256 + 1024;
+    }
+
+    private static class Transfer {
+        final int width;
+        final int height;
+        final ImageCompression.Format format;
+        final int totalSegments;
+        final byte[] data;
+        final BitSet received;
+        long lastUpdate = System.currentTimeMillis();
+
+        Transfer(SegmentedPaintingMessage message) {
+            this.width = message.width;
+            this.height = message.height;
+            this.format = message.format;
+            this.totalSegments = message.totalSegments;
+            this.data = new byte[message.totalLength];
+            this.received = new BitSet(message.totalSegments);
+        }
+
+        boolean matches(SegmentedPaintingMessage message) {
+            return width == message.width && height == message.height && format == message.format
+                    && totalSegments == message.totalSegments && data.length == message.totalLength;
+        }
+    }
+}
@@ -1,60 +1,85 @@
 package immersive_paintings.network;
 
 import immersive_paintings.cobalt.network.Message;
-import immersive_paintings.resources.ByteImage;
+import immersive_paintings.util.ImageCompression;
 import net.minecraft.entity.player.PlayerEntity;
-
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.Serial;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
+import net.minecraft.network.PacketByteBuf;
 
 public abstract class SegmentedPaintingMessage implements Message {
-    @Serial
-    private static final long serialVersionUID = -6584975870115489847L;
+    final int width;
+    final int height;
+    final ImageCompression.Format format;
+    final int totalLength;
+    final int position;
+    final int segment;
+    final int totalSegments;
 
-    private final int width;
-    private final int height;
     private final byte[] data;
-    private final int segment;
-    private final int totalSegments;
-
-    private static final Map<String, List<byte[]>> buffer = new HashMap<>();
+    private final int offset;
+    private final int length;
 
-    public SegmentedPaintingMessage(int width, int height, byte[] data, int segment, int totalSegments) {
-        this.width = width;
-        this.height = height;
-        this.data = data;
+    // the slice [offset, offset + length) of the payload is written as is, no copy is made on the sending side
+    public SegmentedPaintingMessage(ImageCompression.Payload payload, int offset, int length, int segment, int totalSegments) {
+        this.width = payload.width();
+        this.height = payload.height();
+        this.format = payload.format();
+        this.totalLength = payload.data().length;
+        this.position = offset;
         this.segment = segment;
         this.totalSegments = totalSegments;
+        this.data = payload.data();
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public SegmentedPaintingMessage(PacketByteBuf b) {
+        this.width = b.readVarInt();
+        this.height = b.readVarInt();
+        this.format = b.readEnumConstant(ImageCompression.Format.class);
+        this.totalLength = b.readVarInt();
+        this.position = b.readVarInt();
+        this.segment = b.readVarInt();
+        this.totalSegments = b.readVarInt();
+        this.data = b.readByteArray();
+        this.offset = 0;
+        this.length = data.length;
+    }
+
+    @Override
+    public void encode(PacketByteBuf b) {
+        b.writeVarInt(width);
+        b.writeVarInt(height);
+        b.writeEnumConstant(format);
+        b.writeVarInt(totalLength);
+        b.writeVarInt(position);
+        b.writeVarInt(segment);
+        b.writeVarInt(totalSegments);
+        b.writeVarInt(length);
+        b.writeBytes(data, offset, length);
+    }
+
+    @Override
+    public int getSize() {
+        return length + 64;
+    }
+
+    // the received bytes of this segment
+    byte[] getData() {
+        return data;
     }
 
     abstract protected String getIdentifier(PlayerEntity e);
-    abstract protected void process(PlayerEntity e, ByteImage image);
+
+    abstract protected SegmentAssembler getAssembler();
+
+    // called with the assembled payload once the last segment arrived
+    abstract protected void complete(PlayerEntity e, ImageCompression.Payload payload);
 
     @Override
     public void receive(PlayerEntity e) {
-        String i = getIdentifier(e);
-
-        List<byte[]> byteBuffer = buffer.computeIfAbsent(i, (k) -> new LinkedList<>());
-        byteBuffer.add(data);
-
-        if (segment + 1 == totalSegments) {
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream( );
-            for (byte[] b : byteBuffer) {
-                try {
-                    outputStream.write(b);
-                } catch (IOException ex) {
-                    throw new RuntimeException(ex);
-                }
-            }
-            byte[] bytes = outputStream.toByteArray();
-            ByteImage image = new ByteImage(bytes, width, height);
-            process(e, image);
-            buffer.remove(i);
+        ImageCompression.Payload payload = getAssembler().accept(getIdentifier(e), this);
+        if (payload != null) {
+            complete(e, payload);
         }
     }
 }
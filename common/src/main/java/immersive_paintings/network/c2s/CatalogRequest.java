@@ -0,0 +1,87 @@
+package immersive_paintings.network.c2s;
+
+import immersive_paintings.cobalt.network.Message;
+import immersive_paintings.network.LazyNetworkManager;
+import immersive_paintings.network.s2c.PaintingListMessage;
+import immersive_paintings.resources.Painting;
+import immersive_paintings.resources.PaintingCatalog;
+import immersive_paintings.resources.ServerPaintingManager;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class CatalogRequest implements Message {
+    private static final int PAGE_SIZE = 256;
+
+    // one request per hello, repeated ones would queue the whole catalog again each time
+    private static final Set<UUID> expected = ConcurrentHashMap.newKeySet();
+
+    private final long epoch;
+    private final long revision;
+
+    public CatalogRequest(long epoch, long revision) {
+        this.epoch = epoch;
+        this.revision = revision;
+    }
+
+    public CatalogRequest(PacketByteBuf b) {
+        this.epoch = b.readLong();
+        this.revision = b.readVarLong();
+    }
+
+    @Override
+    public void encode(PacketByteBuf b) {
+        b.writeLong(epoch);
+        b.writeVarLong(revision);
+    }
+
+    public static void expect(ServerPlayerEntity player) {
+        expected.add(player.getUuid());
+    }
+
+    public static void forget(ServerPlayerEntity player) {
+        expected.remove(player.getUuid());
+    }
+
+    @Override
+    public void receive(PlayerEntity e) {
+        if (!expected.remove(e.getUuid())) {
+            return;
+        }
+
+        PaintingCatalog catalog = ServerPaintingManager.getCatalog();
+
+        // only what changed since the client's snapshot, or everything if its history is unknown or too old
+        Map<Identifier, Painting> changes = new LinkedHashMap<>();
+        boolean full = !catalog.canDelta(epoch, revision);
+        if (full) {
+            changes.putAll(ServerPaintingManager.getPaintings());
+        } else {
+            for (Map.Entry<Identifier, Boolean> entry : catalog.getChanges(revision).entrySet()) {
+                changes.put(entry.getKey(), entry.getValue() ? ServerPaintingManager.getPainting(entry.getKey()) : null);
+            }
+        }
+
+        // pages share the player's queue with live updates, which therefore never overtake them
+        Map<Identifier, Painting> page = new LinkedHashMap<>();
+        boolean first = true;
+        int remaining = changes.size();
+        for (Map.Entry<Identifier, Painting> entry : changes.entrySet()) {
+            page.put(entry.getKey(), entry.getValue());
+            remaining--;
+            if (page.size() == PAGE_SIZE && remaining > 0) {
+                LazyNetworkManager.sendClient(new PaintingListMessage(page, full && first, false, catalog.getRevision()), (ServerPlayerEntity)e);
+                page = new LinkedHashMap<>();
+                first = false;
+            }
+        }
+        LazyNetworkManager.sendClient(new PaintingListMessage(page, full && first, true, catalog.getRevision()), (ServerPlayerEntity)e);
+    }
+}
@@ -0,0 +1,74 @@
+package immersive_paintings.network.c2s;
+
+import immersive_paintings.Config;
+import immersive_paintings.cobalt.network.Message;
+import immersive_paintings.network.ImageTransfer;
+import immersive_paintings.network.LazyNetworkManager;
+import immersive_paintings.resources.Painting;
+import immersive_paintings.resources.ServerPaintingManager;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+// every texture request of a client tick in one packet
+public class ImageBatchRequest implements Message {
+    // clients split larger batches, anything above is dropped unread
+    public static final int MAX_ENTRIES = 256;
+
+    private final List<Entry> entries;
+    private final boolean compressed;
+
+    public ImageBatchRequest(List<Entry> entries) {
+        this.entries = entries;
+        this.compressed = Config.getInstance().compressImageTransfer;
+    }
+
+    public ImageBatchRequest(PacketByteBuf b) {
+        this.compressed = b.readBoolean();
+        int count = b.readVarInt();
+        if (count < 0 || count > MAX_ENTRIES) {
+            this.entries = List.of();
+            b.skipBytes(b.readableBytes());
+            return;
+        }
+        this.entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new Entry(new Identifier(b.readString()), b.readEnumConstant(Painting.Type.class), b.readVarInt()));
+        }
+    }
+
+    @Override
+    public void encode(PacketByteBuf b) {
+        b.writeBoolean(compressed);
+        b.writeVarInt(entries.size());
+        for (Entry entry : entries) {
+            b.writeString(entry.identifier().toString());
+            b.writeEnumConstant(entry.type());
+            b.writeVarInt(entry.priority());
+        }
+    }
+
+    @Override
+    public void receive(PlayerEntity e) {
+        for (Entry entry : entries) {
+            request((ServerPlayerEntity)e, entry.identifier(), entry.type(), entry.priority());
+        }
+    }
+
+    // lower priorities are sent first, a repeated request only updates the priority
+    private void request(ServerPlayerEntity player, Identifier identifier, Painting.Type type, int priority) {
+        ImageTransfer transfer = LazyNetworkManager.startTransfer(player, identifier, type, priority);
+        if (transfer != null) {
+            ServerPaintingManager.getPayloadAsync(identifier, type, compressed)
+                    .whenCompleteAsync((payload, error) -> LazyNetworkManager.sendTransfer(transfer, payload, player), Objects.requireNonNull(player.getServer()));
+        }
+    }
+
+    public record Entry(Identifier identifier, Painting.Type type, int priority) {
+    }
+}
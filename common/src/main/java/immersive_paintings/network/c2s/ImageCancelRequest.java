@@ -0,0 +1,35 @@
+package immersive_paintings.network.c2s;
+
+import immersive_paintings.cobalt.network.Message;
+import immersive_paintings.network.LazyNetworkManager;
+import immersive_paintings.resources.Painting;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+
+public class ImageCancelRequest implements Message {
+    private final String identifier;
+    private final Painting.Type type;
+
+    public ImageCancelRequest(Identifier identifier, Painting.Type type) {
+        this.identifier = identifier.toString();
+        this.type = type;
+    }
+
+    public ImageCancelRequest(PacketByteBuf b) {
+        this.identifier = b.readString();
+        this.type = b.readEnumConstant(Painting.Type.class);
+    }
+
+    @Override
+    public void encode(PacketByteBuf b) {
+        b.writeString(identifier);
+        b.writeEnumConstant(type);
+    }
+
+    @Override
+    public void receive(PlayerEntity e) {
+        LazyNetworkManager.cancel((ServerPlayerEntity)e, new Identifier(identifier), type);
+    }
+}
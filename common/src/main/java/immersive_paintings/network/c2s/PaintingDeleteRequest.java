@@ -2,26 +2,32 @@ package immersive_paintings.network.c2s;
 
 import immersive_paintings.Main;
 import immersive_paintings.cobalt.network.Message;
-import immersive_paintings.cobalt.network.NetworkHandler;
+import immersive_paintings.network.LazyNetworkManager;
 import immersive_paintings.network.s2c.PaintingListMessage;
 import immersive_paintings.resources.ServerPaintingManager;
 import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
 
-import java.io.Serial;
 import java.util.Objects;
 
 public class PaintingDeleteRequest implements Message {
-    @Serial
-    private static final long serialVersionUID = -4122382267250199065L;
-
     private final String identifier;
 
     public PaintingDeleteRequest(Identifier identifier) {
         this.identifier = identifier.toString();
     }
 
+    public PaintingDeleteRequest(PacketByteBuf b) {
+        this.identifier = b.readString();
+    }
+
+    @Override
+    public void encode(PacketByteBuf b) {
+        b.writeString(identifier);
+    }
+
     @Override
     public void receive(PlayerEntity e) {
         Identifier identifier = new Identifier(this.identifier);
@@ -33,9 +39,10 @@ public class PaintingDeleteRequest implements Message {
 
         ServerPaintingManager.deregisterPainting(identifier);
 
-        //update clients
+        //update clients, queued behind any catalog pages they are still receiving
+        long revision = ServerPaintingManager.getCatalog().getRevision();
         for (ServerPlayerEntity player : Objects.requireNonNull(e.getServer()).getPlayerManager().getPlayerList()) {
-            NetworkHandler.sendToPlayer(new PaintingListMessage(identifier, null), player);
+            LazyNetworkManager.sendClient(new PaintingListMessage(identifier, null, revision), player);
         }
     }
 }
@@ -6,18 +6,18 @@ import immersive_paintings.network.PaintingDataMessage;
 import immersive_paintings.network.s2c.PaintingModifyMessage;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.network.ServerPlayerEntity;
 
-import java.io.Serial;
-
 public class PaintingModifyRequest extends PaintingDataMessage {
-    @Serial
-    private static final long serialVersionUID = -374441776584672414L;
-
     public PaintingModifyRequest(ImmersivePaintingEntity painting) {
         super(painting);
     }
 
+    public PaintingModifyRequest(PacketByteBuf b) {
+        super(b);
+    }
+
     @Override
     public void receive(PlayerEntity e) {
         Entity entity = e.world.getEntityById(getEntityId());
@@ -4,31 +4,40 @@ import immersive_paintings.Config;
 import immersive_paintings.Main;
 import immersive_paintings.cobalt.network.Message;
 import immersive_paintings.cobalt.network.NetworkHandler;
+import immersive_paintings.network.LazyNetworkManager;
 import immersive_paintings.network.s2c.PaintingListMessage;
 import immersive_paintings.network.s2c.RegisterPaintingResponse;
 import immersive_paintings.resources.ByteImage;
 import immersive_paintings.resources.Painting;
 import immersive_paintings.resources.ServerPaintingManager;
-import immersive_paintings.util.SerializableNbt;
+import immersive_paintings.util.ImageCompression;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.nbt.NbtCompound;
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
 
-import java.io.Serial;
 import java.util.Locale;
 import java.util.Objects;
 
 public class RegisterPaintingRequest implements Message {
-    @Serial
-    private static final long serialVersionUID = -8024453179740575548L;
-
     private final String name;
-    private final SerializableNbt painting;
+    private final NbtCompound painting;
 
     public RegisterPaintingRequest(String name, Painting painting) {
         this.name = name;
-        this.painting = new SerializableNbt(painting.toNbt());
+        this.painting = painting.toNbt();
+    }
+
+    public RegisterPaintingRequest(PacketByteBuf b) {
+        this.name = b.readString();
+        this.painting = b.readNbt();
+    }
+
+    @Override
+    public void encode(PacketByteBuf b) {
+        b.writeString(name);
+        b.writeNbt(painting);
     }
 
     private String escapeString(String string) {
@@ -37,9 +46,14 @@ public class RegisterPaintingRequest implements Message {
 
     @Override
     public void receive(PlayerEntity e) {
-        ByteImage image = UploadPaintingRequest.uploadedImages.get(e.getUuidAsString());
+        ImageCompression.Payload payload = UploadPaintingRequest.uploadedImages.remove(e.getUuidAsString());
 
-        if (image.getWidth() > Config.getInstance().maxUserImageWidth || image.getHeight() > Config.getInstance().maxUserImageHeight) {
+        if (payload == null || painting == null) {
+            error("upload_failed", e, null);
+            return;
+        }
+
+        if (payload.width() > Config.getInstance().maxUserImageWidth || payload.height() > Config.getInstance().maxUserImageHeight) {
             error("too_large", e, null);
             return;
         }
@@ -53,23 +67,37 @@ public class RegisterPaintingRequest implements Message {
         String id = escapeString(e.getGameProfile().getName()) + "/" + escapeString(name);
         Identifier identifier = Main.locate(id);
 
-        NbtCompound nbt = this.painting.getNbt();
+        // content addressed, identical uploads share storage and client caches
+        ServerPaintingManager.storeAsync(payload).whenCompleteAsync((stored, throwable) -> {
+            if (throwable != null) {
+                Main.LOGGER.error("Failed to store painting {}", identifier, throwable);
+                error("upload_failed", e, null);
+            } else {
+                register(e, identifier, stored.image(), stored.hash());
+            }
+        }, Objects.requireNonNull(e.getServer()));
+    }
+
+    private void register(PlayerEntity e, Identifier identifier, ByteImage image, String hash) {
+        NbtCompound nbt = this.painting;
 
         nbt.putString("author", e.getGameProfile().getName());
         nbt.putString("name", name);
+        nbt.putString("hash", hash);
 
         Painting painting = Painting.fromNbt(nbt);
 
-        painting.texture.image = image;
+        painting.getTexture(Painting.Type.FULL).image = image;
 
         ServerPaintingManager.registerPainting(
                 identifier,
                 painting
         );
 
-        //update clients
+        //update clients, queued behind any catalog pages they are still receiving
+        long revision = ServerPaintingManager.getCatalog().getRevision();
         for (ServerPlayerEntity player : Objects.requireNonNull(e.getServer()).getPlayerManager().getPlayerList()) {
-            NetworkHandler.sendToPlayer(new PaintingListMessage(identifier, painting), player);
+            LazyNetworkManager.sendClient(new PaintingListMessage(identifier, painting, revision), player);
         }
 
         error(null, e, identifier);
@@ -1,20 +1,29 @@
 package immersive_paintings.network.c2s;
 
+import immersive_paintings.Config;
+import immersive_paintings.network.SegmentAssembler;
 import immersive_paintings.network.SegmentedPaintingMessage;
-import immersive_paintings.resources.ByteImage;
+import immersive_paintings.util.ImageCompression;
 import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.PacketByteBuf;
 
-import java.io.Serial;
 import java.util.HashMap;
 
 public class UploadPaintingRequest extends SegmentedPaintingMessage {
-    @Serial
-    private static final long serialVersionUID = -8172991552002686333L;
+    // kept encoded, decoding happens off the server thread once the painting gets registered
+    public static final HashMap<String, ImageCompression.Payload> uploadedImages = new HashMap<>();
 
-    public static final HashMap<String, ByteImage> uploadedImages = new HashMap<>();
+    private static final SegmentAssembler assembler = new SegmentAssembler(
+            () -> Config.getInstance().maxUserImageWidth,
+            () -> Config.getInstance().maxUserImageHeight
+    );
 
-    public UploadPaintingRequest(int width, int height, byte[] data, int segment, int totalSegments) {
-        super(width, height, data, segment, totalSegments);
+    public UploadPaintingRequest(ImageCompression.Payload payload, int offset, int length, int segment, int totalSegments) {
+        super(payload, offset, length, segment, totalSegments);
+    }
+
+    public UploadPaintingRequest(PacketByteBuf b) {
+        super(b);
     }
 
     @Override
@@ -23,7 +32,12 @@ public class UploadPaintingRequest extends SegmentedPaintingMessage {
     }
 
     @Override
-    protected void process(PlayerEntity e, ByteImage image) {
-        uploadedImages.put(getIdentifier(e), image);
+    protected SegmentAssembler getAssembler() {
+        return assembler;
+    }
+
+    @Override
+    protected void complete(PlayerEntity e, ImageCompression.Payload payload) {
+        uploadedImages.put(getIdentifier(e), payload);
     }
 }
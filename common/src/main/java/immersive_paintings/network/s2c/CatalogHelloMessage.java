@@ -0,0 +1,34 @@
+package immersive_paintings.network.s2c;
+
+import immersive_paintings.Main;
+import immersive_paintings.cobalt.network.Message;
+import immersive_paintings.resources.PaintingCatalog;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.PacketByteBuf;
+
+// sent on join, the client answers with the revision of its snapshot
+public class CatalogHelloMessage implements Message {
+    public final long epoch;
+    public final long revision;
+
+    public CatalogHelloMessage(PaintingCatalog catalog) {
+        this.epoch = catalog.getEpoch();
+        this.revision = catalog.getRevision();
+    }
+
+    public CatalogHelloMessage(PacketByteBuf b) {
+        this.epoch = b.readLong();
+        this.revision = b.readVarLong();
+    }
+
+    @Override
+    public void encode(PacketByteBuf b) {
+        b.writeLong(epoch);
+        b.writeVarLong(revision);
+    }
+
+    @Override
+    public void receive(PlayerEntity e) {
+        Main.networkManager.handleCatalogHello(this);
+    }
+}
@@ -0,0 +1,79 @@
+package immersive_paintings.network.s2c;
+
+import immersive_paintings.Main;
+import immersive_paintings.cobalt.network.Message;
+import immersive_paintings.resources.ClientPaintingManager;
+import immersive_paintings.resources.Painting;
+import immersive_paintings.util.ImageCompression;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// several small images which fit into a single packet together, larger ones use ImageResponse
+public class ImageBatchResponse implements Message {
+    private final List<Entry> entries;
+
+    public ImageBatchResponse(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    public ImageBatchResponse(PacketByteBuf b) {
+        int count = b.readVarInt();
+        this.entries = new ArrayList<>(Math.min(count, 256));
+        for (int i = 0; i < count; i++) {
+            Identifier identifier = new Identifier(b.readString());
+            Painting.Type type = b.readEnumConstant(Painting.Type.class);
+            ImageCompression.Format format = b.readEnumConstant(ImageCompression.Format.class);
+            int width = b.readVarInt();
+            int height = b.readVarInt();
+            byte[] data = b.readByteArray();
+            entries.add(new Entry(identifier, type, new ImageCompression.Payload(format, width, height, data)));
+        }
+    }
+
+    @Override
+    public void encode(PacketByteBuf b) {
+        b.writeVarInt(entries.size());
+        for (Entry entry : entries) {
+            ImageCompression.Payload payload = entry.payload();
+            b.writeString(entry.identifier().toString());
+            b.writeEnumConstant(entry.type());
+            b.writeEnumConstant(payload.format());
+            b.writeVarInt(payload.width());
+            b.writeVarInt(payload.height());
+            b.writeByteArray(payload.data());
+        }
+    }
+
+    @Override
+    public int getSize() {
+        int size = 64;
+        for (Entry entry : entries) {
+            size += getEntrySize(entry.identifier(), entry.payload().data().length);
+        }
+        return size;
+    }
+
+    // identifiers are ascii, the remaining fields are enums and varints of at most 3 bytes each
+    public static int getEntrySize(Identifier identifier, int length) {
+        return identifier.toString().length() + length + 16;
+    }
+
+    @Override
+    public void receive(PlayerEntity e) {
+        for (Entry entry : entries) {
+            ImageCompression.Payload payload = entry.payload();
+            if (payload.width() <= 0 || payload.height() <= 0 || payload.width() > ImageResponse.MAX_SIZE || payload.height() > ImageResponse.MAX_SIZE) {
+                Main.LOGGER.warn("Rejected image {}, size {}x{} exceeds the limit", entry.identifier(), payload.width(), payload.height());
+            } else {
+                ClientPaintingManager.loadImageAsync(entry.identifier(), entry.type(), payload);
+            }
+        }
+    }
+
+    public record Entry(Identifier identifier, Painting.Type type, ImageCompression.Payload payload) {
+    }
+}
@@ -1,34 +1,57 @@
 package immersive_paintings.network.s2c;
 
+import immersive_paintings.network.SegmentAssembler;
 import immersive_paintings.network.SegmentedPaintingMessage;
-import immersive_paintings.resources.ByteImage;
 import immersive_paintings.resources.ClientPaintingManager;
 import immersive_paintings.resources.Painting;
+import immersive_paintings.util.ImageCompression;
 import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 
-import java.io.Serial;
-
 public class ImageResponse extends SegmentedPaintingMessage {
-    @Serial
-    private static final long serialVersionUID = -2404615222596628414L;
+    // the server is trusted, the limit only guards against corrupted transfers
+    public static final int MAX_SIZE = 16384;
+    private static final SegmentAssembler assembler = new SegmentAssembler(() -> MAX_SIZE, () -> MAX_SIZE);
 
+    private final int session;
     private final String identifier;
     private final Painting.Type type;
 
-    public ImageResponse(Identifier identifier, Painting.Type type, int width, int height, byte[] data, int segment, int totalSegments) {
-        super(width, height, data, segment, totalSegments);
+    public ImageResponse(int session, Identifier identifier, Painting.Type type, ImageCompression.Payload payload, int offset, int length, int segment, int totalSegments) {
+        super(payload, offset, length, segment, totalSegments);
+        this.session = session;
         this.identifier = identifier.toString();
         this.type = type;
     }
 
+    public ImageResponse(PacketByteBuf b) {
+        super(b);
+        this.session = b.readVarInt();
+        this.identifier = b.readString();
+        this.type = b.readEnumConstant(Painting.Type.class);
+    }
+
+    @Override
+    public void encode(PacketByteBuf b) {
+        super.encode(b);
+        b.writeVarInt(session);
+        b.writeString(identifier);
+        b.writeEnumConstant(type);
+    }
+
     @Override
     protected String getIdentifier(PlayerEntity e) {
-        return identifier + type.name();
+        return identifier + type.name() + "#" + session;
+    }
+
+    @Override
+    protected SegmentAssembler getAssembler() {
+        return assembler;
     }
 
     @Override
-    protected void process(PlayerEntity e, ByteImage image) {
-        ClientPaintingManager.loadImage(new Identifier(identifier), type, image);
+    protected void complete(PlayerEntity e, ImageCompression.Payload payload) {
+        ClientPaintingManager.loadImageAsync(new Identifier(identifier), type, payload);
     }
 }
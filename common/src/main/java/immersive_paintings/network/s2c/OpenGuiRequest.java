@@ -3,13 +3,9 @@ package immersive_paintings.network.s2c;
 import immersive_paintings.Main;
 import immersive_paintings.cobalt.network.Message;
 import net.minecraft.entity.player.PlayerEntity;
-
-import java.io.Serial;
+import net.minecraft.network.PacketByteBuf;
 
 public class OpenGuiRequest implements Message {
-    @Serial
-    private static final long serialVersionUID = -2371116419166251497L;
-
     public final Type gui;
 
     public final int entity;
@@ -19,6 +15,17 @@ public class OpenGuiRequest implements Message {
         this.entity = entity;
     }
 
+    public OpenGuiRequest(PacketByteBuf b) {
+        this.gui = b.readEnumConstant(Type.class);
+        this.entity = b.readVarInt();
+    }
+
+    @Override
+    public void encode(PacketByteBuf b) {
+        b.writeEnumConstant(gui);
+        b.writeVarInt(entity);
+    }
+
     @Override
     public void receive(PlayerEntity e) {
         Main.networkManager.handleOpenGuiRequest(this);
@@ -3,39 +3,166 @@ package immersive_paintings.network.s2c;
 import immersive_paintings.Main;
 import immersive_paintings.cobalt.network.Message;
 import immersive_paintings.resources.Painting;
-import immersive_paintings.resources.ServerPaintingManager;
-import immersive_paintings.util.SerializableNbt;
+import io.netty.buffer.Unpooled;
 import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 
-import java.io.Serial;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+// a page of catalog changes, removed paintings are sent as null
+// encoded column by column with namespaces and authors interned, which keeps pages small and compresses well
 public class PaintingListMessage implements Message {
-    @Serial
-    private static final long serialVersionUID = 2240894186943896681L;
+    private static final int PRESENT = 1;
+    private static final int DATAPACK = 2;
+    private static final int DERIVED_HASH = 4;
 
-    private final Map<String, SerializableNbt> paintings = new HashMap<>();
+    private final List<Identifier> identifiers = new ArrayList<>();
+    private final List<Painting> paintings = new ArrayList<>();
     private final boolean clear;
+    private final boolean complete;
+    private final long revision;
+    private int size = -1;
 
-    public PaintingListMessage() {
-        //datapack paintings
-        for (Map.Entry<Identifier, Painting> entry : ServerPaintingManager.getDatapackPaintings().entrySet()) {
-            this.paintings.put(entry.getKey().toString(), new SerializableNbt(entry.getValue().toNbt()));
+    public PaintingListMessage(Map<Identifier, Painting> paintings, boolean clear, boolean complete, long revision) {
+        for (Map.Entry<Identifier, Painting> entry : paintings.entrySet()) {
+            this.identifiers.add(entry.getKey());
+            this.paintings.add(entry.getValue());
+        }
+        this.clear = clear;
+        this.complete = complete;
+        this.revision = revision;
+    }
+
+    // a live update, sent to everyone online
+    public PaintingListMessage(Identifier identifier, Painting painting, long revision) {
+        this.identifiers.add(identifier);
+        this.paintings.add(painting);
+        this.clear = false;
+        this.complete = false;
+        this.revision = revision;
+    }
+
+    public PaintingListMessage(PacketByteBuf b) {
+        String[] strings = new String[b.readVarInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = b.readString();
+        }
+
+        int size = b.readVarInt();
+        int[] flags = new int[size];
+        for (int i = 0; i < size; i++) {
+            flags[i] = b.readByte();
+        }
+        for (int i = 0; i < size; i++) {
+            identifiers.add(new Identifier(strings[b.readVarInt()], b.readString()));
+        }
+
+        int[][] dimensions = new int[3][size];
+        for (int[] column : dimensions) {
+            for (int i = 0; i < size; i++) {
+                if ((flags[i] & PRESENT) != 0) {
+                    column[i] = b.readVarInt();
+                }
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & PRESENT) == 0) {
+                paintings.add(null);
+            } else {
+                String name = b.readString();
+                String author = strings[b.readVarInt()];
+                String hash = (flags[i] & DERIVED_HASH) != 0 ? deriveHash(identifiers.get(i)) : b.readString();
+                paintings.add(new Painting(null, dimensions[0][i], dimensions[1][i], dimensions[2][i], name, author, (flags[i] & DATAPACK) != 0, hash));
+            }
+        }
+
+        clear = b.readBoolean();
+        complete = b.readBoolean();
+        revision = b.readVarLong();
+    }
+
+    @Override
+    public void encode(PacketByteBuf b) {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (int i = 0; i < identifiers.size(); i++) {
+            strings.putIfAbsent(identifiers.get(i).getNamespace(), strings.size());
+            if (paintings.get(i) != null) {
+                strings.putIfAbsent(paintings.get(i).author, strings.size());
+            }
+        }
+        b.writeVarInt(strings.size());
+        for (String string : strings.keySet()) {
+            b.writeString(string);
         }
 
-        //custom paintings
-        for (Map.Entry<Identifier, Painting> entry : ServerPaintingManager.get().getCustomServerPaintings().entrySet()) {
-            this.paintings.put(entry.getKey().toString(), new SerializableNbt(entry.getValue().toNbt()));
+        b.writeVarInt(identifiers.size());
+        int[] flags = new int[identifiers.size()];
+        for (int i = 0; i < identifiers.size(); i++) {
+            Painting painting = paintings.get(i);
+            if (painting != null) {
+                flags[i] |= PRESENT;
+                flags[i] |= painting.datapack ? DATAPACK : 0;
+                flags[i] |= painting.hash.equals(deriveHash(identifiers.get(i))) ? DERIVED_HASH : 0;
+            }
+            b.writeByte(flags[i]);
+        }
+        for (Identifier identifier : identifiers) {
+            b.writeVarInt(strings.get(identifier.getNamespace()));
+            b.writeString(identifier.getPath());
+        }
+
+        for (Painting painting : paintings) {
+            if (painting != null) {
+                b.writeVarInt(painting.width);
+            }
+        }
+        for (Painting painting : paintings) {
+            if (painting != null) {
+                b.writeVarInt(painting.height);
+            }
+        }
+        for (Painting painting : paintings) {
+            if (painting != null) {
+                b.writeVarInt(painting.resolution);
+            }
+        }
+
+        for (int i = 0; i < identifiers.size(); i++) {
+            Painting painting = paintings.get(i);
+            if (painting != null) {
+                b.writeString(painting.name);
+                b.writeVarInt(strings.get(painting.author));
+                if ((flags[i] & DERIVED_HASH) == 0) {
+                    b.writeString(painting.hash);
+                }
+            }
         }
 
-        clear = true;
+        b.writeBoolean(clear);
+        b.writeBoolean(complete);
+        b.writeVarLong(revision);
+    }
+
+    // datapack paintings are hashed by their resource location, see PaintingsLoader
+    private static String deriveHash(Identifier identifier) {
+        return identifier.toString().replaceAll("[^a-zA-Z\\d]", "");
     }
 
-    public PaintingListMessage(Identifier identifier, Painting painting) {
-        this.paintings.put(identifier.toString(), painting == null ? null : new SerializableNbt(painting.toNbt()));
-        clear = false;
+    // measured by encoding once, the columns are too irregular for a per entry estimate
+    @Override
+    public int getSize() {
+        if (size < 0) {
+            PacketByteBuf b = new PacketByteBuf(Unpooled.buffer());
+            encode(b);
+            size = b.readableBytes();
+            b.release();
+        }
+        return size;
     }
 
     @Override
@@ -44,14 +171,9 @@ public class PaintingListMessage implements Message {
     }
 
     public Map<Identifier, Painting> getPaintings() {
-        Map<Identifier, Painting> paintings = new HashMap<>();
-        for (Map.Entry<String, SerializableNbt> entry : this.paintings.entrySet()) {
-            Identifier identifier = new Identifier(entry.getKey());
-            if (entry.getValue() == null) {
-                paintings.put(identifier, null);
-            } else {
-                paintings.put(identifier, Painting.fromNbt(entry.getValue().getNbt()));
-            }
+        Map<Identifier, Painting> paintings = new LinkedHashMap<>();
+        for (int i = 0; i < identifiers.size(); i++) {
+            paintings.put(identifiers.get(i), this.paintings.get(i));
         }
         return paintings;
     }
@@ -59,4 +181,13 @@ public class PaintingListMessage implements Message {
     public boolean shouldClear() {
         return clear;
     }
+
+    // the last page of a sync, the client is up to date with the revision afterwards
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
 }
@@ -3,14 +3,10 @@ package immersive_paintings.network.s2c;
 import immersive_paintings.Main;
 import immersive_paintings.cobalt.network.Message;
 import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 
-import java.io.Serial;
-
 public class RegisterPaintingResponse implements Message {
-    @Serial
-    private static final long serialVersionUID = -5560323045809539454L;
-
     public final String error;
     public final String identifier;
 
@@ -19,6 +15,23 @@ public class RegisterPaintingResponse implements Message {
         this.identifier = identifier == null ? null : identifier.toString();
     }
 
+    public RegisterPaintingResponse(PacketByteBuf b) {
+        this.error = b.readBoolean() ? b.readString() : null;
+        this.identifier = b.readBoolean() ? b.readString() : null;
+    }
+
+    @Override
+    public void encode(PacketByteBuf b) {
+        b.writeBoolean(error != null);
+        if (error != null) {
+            b.writeString(error);
+        }
+        b.writeBoolean(identifier != null);
+        if (identifier != null) {
+            b.writeString(identifier);
+        }
+    }
+
     @Override
     public void receive(PlayerEntity e) {
         Main.networkManager.handleRegisterPaintingResponse(this);
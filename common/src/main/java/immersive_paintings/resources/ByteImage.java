@@ -2,6 +2,7 @@ package immersive_paintings.resources;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -36,16 +37,7 @@ public class ByteImage {
         ByteImage byteImage = new ByteImage(image.getWidth(), image.getHeight());
 
         int[] data = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
-        for (int x = 0; x < image.getWidth(); x++) {
-            for (int y = 0; y < image.getHeight(); y++) {
-                int d = data[y * image.getWidth() + x];
-                byteImage.setPixel(x, y,
-                        (d >> 16) & 0xFF,
-                        (d >> 8) & 0xFF,
-                        d & 0xFF
-                );
-            }
-        }
+        byteImage.setARGB(0, 0, image.getWidth(), image.getHeight(), data, 0, image.getWidth());
 
         return byteImage;
     }
@@ -53,11 +45,9 @@ public class ByteImage {
     public void write(File file) {
         BufferedImage bufferedImage = new BufferedImage(width, height, TYPE_INT_RGB);
 
-        for (int x = 0; x < getWidth(); x++) {
-            for (int y = 0; y < getHeight(); y++) {
-                bufferedImage.setRGB(x, y, getARGB(x, y));
-            }
-        }
+        // TYPE_INT_RGB is backed by a single row-major int array, fill it directly
+        int[] data = ((DataBufferInt)bufferedImage.getRaster().getDataBuffer()).getData();
+        getARGB(0, 0, width, height, data, 0, width);
 
         try {
             ImageIO.write(bufferedImage, "png", file);
@@ -77,8 +67,47 @@ public class ByteImage {
         bytes[i + 2] = b;
     }
 
+    // row-major, tightly packed RGB, iterate x in the inner loop
     public int getIndex(int x, int y) {
-        return (x * height + y) * BANDS;
+        return (y * width + x) * BANDS;
+    }
+
+    // region access in the same layout as BufferedImage.getRGB
+    public void getARGB(int x, int y, int w, int h, int[] target, int offset, int scansize) {
+        for (int row = 0; row < h; row++) {
+            int index = getIndex(x, y + row);
+            int t = offset + row * scansize;
+            for (int col = 0; col < w; col++) {
+                target[t++] = 0xff000000 | ((bytes[index] & 0xFF) << 16) | ((bytes[index + 1] & 0xFF) << 8) | (bytes[index + 2] & 0xFF);
+                index += BANDS;
+            }
+        }
+    }
+
+    // region access in the layout used by NativeImage
+    public void getABGR(int x, int y, int w, int h, int[] target, int offset, int scansize) {
+        for (int row = 0; row < h; row++) {
+            int index = getIndex(x, y + row);
+            int t = offset + row * scansize;
+            for (int col = 0; col < w; col++) {
+                target[t++] = 0xff000000 | (bytes[index] & 0xFF) | ((bytes[index + 1] & 0xFF) << 8) | ((bytes[index + 2] & 0xFF) << 16);
+                index += BANDS;
+            }
+        }
+    }
+
+    public void setARGB(int x, int y, int w, int h, int[] source, int offset, int scansize) {
+        for (int row = 0; row < h; row++) {
+            int index = getIndex(x, y + row);
+            int s = offset + row * scansize;
+            for (int col = 0; col < w; col++) {
+                int d = source[s++];
+                bytes[index] = (byte)(d >> 16);
+                bytes[index + 1] = (byte)(d >> 8);
+                bytes[index + 2] = (byte)d;
+                index += BANDS;
+            }
+        }
     }
 
     public byte[] getBytes() {
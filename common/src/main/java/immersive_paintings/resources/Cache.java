@@ -1,38 +1,259 @@
 package immersive_paintings.resources;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.Optional;
+import immersive_paintings.Config;
+import immersive_paintings.Main;
+import immersive_paintings.util.ImageCompression;
+import net.minecraft.util.Util;
 
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+// textures are stored in the transfer format, the index keeps size and last access of every entry
+// so lookups never touch missing files and the least recently used ones go once the size cap is exceeded
 public class Cache {
+    private static final File DIRECTORY = new File("./immersive_paintings_cache");
+    private static final File INDEX = new File(DIRECTORY, "index.dat");
+    private static final int INDEX_VERSION = 1;
+    private static final int HEADER_SIZE = 13;
+    private static final long SAVE_INTERVAL = 30000;
+
+    private static final Map<String, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+    private static boolean loaded;
+    private static boolean dirty;
+    private static long lastSave;
+    private static long size;
+
     private static File getFile(String key) {
-        return new File("./immersive_paintings_cache/" + key + ".png");
+        return new File(DIRECTORY, key + ".bin");
+    }
+
+    // reads on an io thread and completes empty on a miss, decoding is left to the caller
+    public static CompletableFuture<Optional<ImageCompression.Payload>> getAsync(Painting.Texture texture) {
+        String hash = texture.hash;
+        return CompletableFuture.supplyAsync(() -> read(hash), Util.getIoWorkerExecutor());
     }
 
     public static Optional<ByteImage> get(Painting.Texture texture) {
-        File file = getFile(texture.hash);
+        Optional<ImageCompression.Payload> payload = read(texture.hash);
+        if (payload.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(ImageCompression.decode(payload.get()));
+        } catch (IOException | RuntimeException e) {
+            drop(texture, e);
+            return Optional.empty();
+        }
+    }
+
+    // for entries which turned out to be corrupt
+    public static void drop(Painting.Texture texture, Throwable reason) {
+        Main.LOGGER.warn("Dropping unreadable cache entry {}", texture.hash, reason);
+        remove(texture.hash);
+    }
 
-        if (!file.exists()) {
+    private static Optional<ImageCompression.Payload> read(String hash) {
+        synchronized (index) {
+            load();
+            Entry entry = index.get(hash);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            entry.lastAccess = System.currentTimeMillis();
+            dirty = true;
+        }
+
+        File file = getFile(hash);
+        try (DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            ImageCompression.Format[] formats = ImageCompression.Format.values();
+            int format = stream.readUnsignedByte();
+            int width = stream.readInt();
+            int height = stream.readInt();
+            if (format >= formats.length || width <= 0 || height <= 0 || file.length() - HEADER_SIZE > Integer.MAX_VALUE) {
+                throw new IOException("Invalid cache header");
+            }
+            byte[] data = new byte[(int)(file.length() - HEADER_SIZE)];
+            stream.readFully(data);
+            return Optional.of(new ImageCompression.Payload(formats[format], width, height, data));
+        } catch (IOException e) {
+            Main.LOGGER.warn("Dropping unreadable cache entry {}", hash, e);
+            remove(hash);
             return Optional.empty();
+        } finally {
+            synchronized (index) {
+                saveIfNeeded();
+            }
         }
+    }
+
+    // payloads received from the server are stored as they are, no re-encoding needed
+    public static void set(Painting.Texture texture, ImageCompression.Payload payload) {
+        String hash = texture.hash;
+        Util.getIoWorkerExecutor().execute(() -> write(hash, payload));
+    }
 
+    private static void write(String hash, ImageCompression.Payload payload) {
+        File file = getFile(hash);
         try {
-            FileInputStream stream = new FileInputStream(file.getPath());
-            return Optional.of(ByteImage.read(stream));
+            //noinspection ResultOfMethodCallIgnored
+            DIRECTORY.mkdirs();
+
+            // written next to the target first, a crash never leaves a truncated entry behind
+            Path temp = Files.createTempFile(DIRECTORY.toPath(), hash, ".tmp");
+            try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                stream.writeByte(payload.format().ordinal());
+                stream.writeInt(payload.width());
+                stream.writeInt(payload.height());
+                stream.write(payload.data());
+            }
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException e) {
-            e.printStackTrace();
+            Main.LOGGER.error("Failed to write cache entry {}", hash, e);
+            return;
+        }
+
+        synchronized (index) {
+            load();
+            Entry previous = index.put(hash, new Entry(file.length(), System.currentTimeMillis()));
+            if (previous != null) {
+                size -= previous.size;
+            }
+            size += file.length();
+            dirty = true;
+            evict();
+            saveIfNeeded();
+        }
+    }
+
+    private static void remove(String hash) {
+        synchronized (index) {
+            Entry entry = index.remove(hash);
+            if (entry != null) {
+                size -= entry.size;
+                dirty = true;
+            }
         }
+        //noinspection ResultOfMethodCallIgnored
+        getFile(hash).delete();
+    }
 
-        return Optional.empty();
+    // writes pending access times, called on disconnect and shutdown
+    public static void flush() {
+        synchronized (index) {
+            if (loaded && dirty) {
+                save();
+                lastSave = System.currentTimeMillis();
+            }
+        }
     }
 
-    public static void set(Painting.Texture texture) {
-        if (texture.image != null) {
-            File file = getFile(texture.hash);
+    private static void evict() {
+        long capacity = Config.getInstance().clientCacheMegabytes * 1024L * 1024L;
+        Iterator<Map.Entry<String, Entry>> iterator = index.entrySet().iterator();
+        while (size > capacity && iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
             //noinspection ResultOfMethodCallIgnored
-            file.getParentFile().mkdirs();
-            texture.image.write(file);
+            getFile(entry.getKey()).delete();
+            size -= entry.getValue().size;
+            iterator.remove();
+            dirty = true;
+        }
+    }
+
+    // reads the index and reconciles it with the directory, entries written after the last save are picked up again
+    private static void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        lastSave = System.currentTimeMillis();
+
+        Map<String, Entry> entries = new HashMap<>();
+        if (INDEX.exists()) {
+            try (DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(INDEX)))) {
+                if (stream.readInt() == INDEX_VERSION) {
+                    int count = stream.readInt();
+                    for (int i = 0; i < count; i++) {
+                        String hash = stream.readUTF();
+                        long length = stream.readLong();
+                        long lastAccess = stream.readLong();
+                        entries.put(hash, new Entry(length, lastAccess));
+                    }
+                }
+            } catch (IOException e) {
+                Main.LOGGER.warn("Rebuilding texture cache index", e);
+            }
+        }
+
+        List<Map.Entry<String, Entry>> found = new ArrayList<>();
+        File[] files = DIRECTORY.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(".bin")) {
+                    String hash = name.substring(0, name.length() - 4);
+                    Entry entry = entries.get(hash);
+                    if (entry == null || entry.size != file.length()) {
+                        entry = new Entry(file.length(), file.lastModified());
+                    }
+                    found.add(Map.entry(hash, entry));
+                } else if (name.endsWith(".png") || name.endsWith(".tmp")) {
+                    // pngs are left over from the previous cache format
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                }
+            }
+        }
+
+        found.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+        for (Map.Entry<String, Entry> entry : found) {
+            index.put(entry.getKey(), entry.getValue());
+            size += entry.getValue().size;
+        }
+        dirty = true;
+        evict();
+    }
+
+    private static void saveIfNeeded() {
+        long now = System.currentTimeMillis();
+        if (dirty && now - lastSave > SAVE_INTERVAL) {
+            save();
+            lastSave = now;
+        }
+    }
+
+    private static void save() {
+        try {
+            //noinspection ResultOfMethodCallIgnored
+            DIRECTORY.mkdirs();
+            Path temp = Files.createTempFile(DIRECTORY.toPath(), "index", ".tmp");
+            try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                stream.writeInt(INDEX_VERSION);
+                stream.writeInt(index.size());
+                for (Map.Entry<String, Entry> entry : index.entrySet()) {
+                    stream.writeUTF(entry.getKey());
+                    stream.writeLong(entry.getValue().size);
+                    stream.writeLong(entry.getValue().lastAccess);
+                }
+            }
+            Files.move(temp, INDEX.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+        } catch (IOException e) {
+            Main.LOGGER.error("Failed to save texture cache index", e);
+        }
+    }
+
+    private static class Entry {
+        final long size;
+        long lastAccess;
+
+        Entry(long size, long lastAccess) {
+            this.size = size;
+            this.lastAccess = lastAccess;
         }
     }
 }
@@ -0,0 +1,184 @@
+package immersive_paintings.resources;
+
+import immersive_paintings.Main;
+import immersive_paintings.cobalt.network.NetworkHandler;
+import immersive_paintings.network.c2s.CatalogRequest;
+import immersive_paintings.network.s2c.CatalogHelloMessage;
+import immersive_paintings.network.s2c.PaintingListMessage;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ServerInfo;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+// the painting list of the current server, persisted per server so reconnects only fetch what changed
+public class ClientCatalog {
+    private static final File DIRECTORY = new File("./immersive_paintings_cache/catalog");
+    private static final long SAVE_INTERVAL = 5000;
+
+    private static String server;
+    private static long epoch;
+    private static long revision = -1;
+    // only a completed sync makes the revision trustworthy, earlier live updates may leave gaps
+    private static boolean synced;
+    private static volatile long latestSave;
+    // live updates only mark the snapshot, serializing a large catalog on every change would stall the client
+    private static boolean dirty;
+    private static long lastSave;
+
+    public static void handleHello(CatalogHelloMessage message) {
+        disconnect();
+
+        String server = getServerKey();
+        ClientCatalog.server = server;
+        epoch = message.epoch;
+        revision = -1;
+        synced = false;
+
+        CompletableFuture.supplyAsync(() -> server == null ? null : load(server), Util.getIoWorkerExecutor())
+                .thenAcceptAsync(snapshot -> {
+                    if (!Objects.equals(server, ClientCatalog.server) || epoch != message.epoch) {
+                        return;
+                    }
+
+                    clear();
+                    long known = -1;
+                    if (snapshot != null && snapshot.getLong("epoch") == message.epoch) {
+                        NbtCompound paintings = snapshot.getCompound("paintings");
+                        for (String key : paintings.getKeys()) {
+                            put(new Identifier(key), Painting.fromNbt(paintings.getCompound(key)));
+                        }
+                        known = snapshot.getLong("revision");
+                    }
+                    NetworkHandler.sendToServer(new CatalogRequest(message.epoch, known));
+                }, MinecraftClient.getInstance());
+    }
+
+    public static void handleList(PaintingListMessage message) {
+        if (message.shouldClear()) {
+            clear();
+        }
+        for (Map.Entry<Identifier, Painting> entry : message.getPaintings().entrySet()) {
+            if (entry.getValue() == null) {
+                Painting previous = ClientPaintingManager.getPaintings().remove(entry.getKey());
+                if (previous != null) {
+                    ClientTextureManager.release(previous);
+                }
+                PaintingSearchIndex.remove(entry.getKey());
+            } else {
+                put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        boolean completed = message.isComplete() && !synced;
+        synced |= message.isComplete();
+        if (synced) {
+            revision = message.getRevision();
+            dirty = true;
+            if (completed) {
+                save();
+            }
+        }
+    }
+
+    public static void tick() {
+        if (dirty && System.currentTimeMillis() - lastSave > SAVE_INTERVAL) {
+            save();
+        }
+    }
+
+    public static void disconnect() {
+        if (dirty) {
+            save();
+        }
+        server = null;
+    }
+
+    // the search index and the textures follow every change of the painting list
+    private static void put(Identifier identifier, Painting painting) {
+        Painting previous = ClientPaintingManager.getPaintings().put(identifier, painting);
+        if (previous != null) {
+            ClientTextureManager.release(previous);
+        }
+        PaintingSearchIndex.put(identifier, painting);
+    }
+
+    private static void clear() {
+        ClientPaintingManager.getPaintings().clear();
+        PaintingSearchIndex.clear();
+        ClientTextureManager.clear();
+    }
+
+    private static String getServerKey() {
+        ServerInfo info = MinecraftClient.getInstance().getCurrentServerEntry();
+        if (info == null || MinecraftClient.getInstance().isIntegratedServerRunning()) {
+            return null;
+        }
+        return info.address.replaceAll("[^a-zA-Z\\d._-]", "_");
+    }
+
+    private static File getFile(String server) {
+        return new File(DIRECTORY, server + ".nbt");
+    }
+
+    private static NbtCompound load(String server) {
+        File file = getFile(server);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return NbtIo.readCompressed(file);
+        } catch (IOException e) {
+            Main.LOGGER.warn("Failed to read painting catalog of {}", server, e);
+            return null;
+        }
+    }
+
+    private static void save() {
+        dirty = false;
+        lastSave = System.currentTimeMillis();
+        if (server != null) {
+            save(server);
+        }
+    }
+
+    // serialized on the client thread, written on an io thread
+    private static void save(String server) {
+        NbtCompound paintings = new NbtCompound();
+        for (Map.Entry<Identifier, Painting> entry : ClientPaintingManager.getPaintings().entrySet()) {
+            paintings.put(entry.getKey().toString(), entry.getValue().toNbt());
+        }
+        NbtCompound nbt = new NbtCompound();
+        nbt.putLong("epoch", epoch);
+        nbt.putLong("revision", revision);
+        nbt.put("paintings", paintings);
+
+        // writes may run on different threads, only the latest snapshot gets written
+        long id = ++latestSave;
+        Util.getIoWorkerExecutor().execute(() -> {
+            synchronized (DIRECTORY) {
+                if (id != latestSave) {
+                    return;
+                }
+                try {
+                    //noinspection ResultOfMethodCallIgnored
+                    DIRECTORY.mkdirs();
+                    File temp = File.createTempFile(server, ".tmp", DIRECTORY);
+                    NbtIo.writeCompressed(nbt, temp);
+                    Files.move(temp.toPath(), getFile(server).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException e) {
+                    Main.LOGGER.warn("Failed to save painting catalog of {}", server, e);
+                }
+            }
+        });
+    }
+}
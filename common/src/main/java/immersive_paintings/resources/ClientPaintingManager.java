@@ -1,22 +1,37 @@
 package immersive_paintings.resources;
 
+import immersive_paintings.Main;
 import immersive_paintings.client.ClientUtils;
 import immersive_paintings.cobalt.network.NetworkHandler;
-import immersive_paintings.network.c2s.ImageRequest;
+import immersive_paintings.network.c2s.ImageCancelRequest;
+import immersive_paintings.network.c2s.ImageBatchRequest;
+import immersive_paintings.util.ImageCompression;
 import net.minecraft.client.MinecraftClient;
-import net.minecraft.client.texture.NativeImage;
-import net.minecraft.client.texture.NativeImageBackedTexture;
 import net.minecraft.util.Identifier;
-import org.jetbrains.annotations.NotNull;
+import net.minecraft.util.Util;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class ClientPaintingManager {
     static final Painting DEFAULT = new Painting(new ByteImage(2, 2), 2);
 
     static Map<Identifier, Painting> paintings = new HashMap<>();
 
+    public static final int PRIORITY_GUI = 0;
+    // behind anything visible, including far away world paintings
+    public static final int PRIORITY_PREFETCH = 1024;
+    private static final int PRIORITY_TOLERANCE = 8;
+    private static final int REPRIORITIZE_INTERVAL = 20;
+    private static final long CANCEL_TIMEOUT = 5000;
+
+    private static final Map<Painting.Texture, PendingRequest> pendingRequests = new HashMap<>();
+    // requests of the current tick, sent together at its end
+    private static final Set<PendingRequest> batch = new LinkedHashSet<>();
+    private static int ticks;
+
     public static Map<Identifier, Painting> getPaintings() {
         return paintings;
     }
@@ -25,47 +40,210 @@ public class ClientPaintingManager {
         return paintings.getOrDefault(identifier, DEFAULT);
     }
 
-    public static Painting.Texture getPaintingTexture(Identifier identifier, Painting.Type type) {
+    // lower priorities are sent first by the server, world paintings use their distance
+    public static Painting.Texture getPaintingTexture(Identifier identifier, Painting.Type type, int priority) {
         if (paintings.containsKey(identifier)) {
             Painting painting = paintings.get(identifier);
-            Painting.Texture textureOriginal = painting.getTexture(type);
-            Painting.Texture texture = painting.getTexture(textureOriginal.link);
-            if (texture.image == null && !texture.requested) {
-                texture.requested = true;
-
-                Cache.get(texture)
-                        .ifPresentOrElse((image) -> loadImage(texture, image),
-                                () -> NetworkHandler.sendToServer(new ImageRequest(identifier, textureOriginal.link)));
-            }
+            Painting.Texture texture = request(identifier, painting, type, priority);
 
-            //fall back to the highest resolution if image does not exist yet
-            if (texture.image == null) {
-                for (Painting.Type t : Painting.Type.values()) {
-                    Painting.Texture temporaryTexture = painting.getTexture(t);
-                    if (temporaryTexture.image != null) {
-                        return temporaryTexture;
-                    }
-                }
+            //fall back to the closest resolution available, preferring lower ones
+            if (!texture.loaded) {
+                texture = getFallback(painting, texture.link);
             }
 
+            ClientTextureManager.touch(texture);
             return texture;
         } else {
-            return DEFAULT.texture;
+            return DEFAULT.getTexture(Painting.Type.FULL);
+        }
+    }
+
+    // requests a texture nobody displays yet, keeps the request alive as long as it is called
+    public static void prefetch(Identifier identifier, Painting.Type type) {
+        Painting painting = paintings.get(identifier);
+        if (painting != null) {
+            request(identifier, painting, type, PRIORITY_PREFETCH);
+        }
+    }
+
+    // prefetched requests which never got used are dropped on the server too
+    public static void cancelPrefetches() {
+        Iterator<PendingRequest> iterator = pendingRequests.values().iterator();
+        while (iterator.hasNext()) {
+            PendingRequest request = iterator.next();
+            if (request.priority == PRIORITY_PREFETCH && !request.texture.loaded) {
+                cancel(request);
+                iterator.remove();
+            }
+        }
+    }
+
+    private static Painting.Texture request(Identifier identifier, Painting painting, Painting.Type type, int priority) {
+        Painting.Texture textureOriginal = painting.getTexture(type);
+        Painting.Texture texture = painting.getTexture(textureOriginal.link);
+        if (!texture.loaded && !texture.requested) {
+            texture.requested = true;
+
+            Cache.getAsync(texture)
+                    .thenApplyAsync(cached -> cached.map(payload -> {
+                        try {
+                            return ClientUtils.payloadToNativeImage(payload);
+                        } catch (IOException | RuntimeException e) {
+                            Cache.drop(texture, e);
+                            return null;
+                        }
+                    }), Util.getMainWorkerExecutor())
+                    .whenCompleteAsync((cached, e) -> {
+                        if (e != null) {
+                            // not cached after all, the next use requests it again
+                            Main.LOGGER.error("Failed to read cached texture {}", texture.hash, e);
+                            texture.requested = false;
+                        } else if (cached.isPresent()) {
+                            ClientTextureManager.queue(texture, cached.get());
+                        } else {
+                            PendingRequest request = new PendingRequest(identifier, textureOriginal.link, texture, priority);
+                            pendingRequests.put(texture, request);
+                            batch.add(request);
+                        }
+                    }, MinecraftClient.getInstance());
+        } else if (!texture.loaded) {
+            PendingRequest request = pendingRequests.get(texture);
+            if (request != null) {
+                request.touch(priority);
+
+                // a prefetched texture which is displayed now should not wait for the next reprioritization
+                if (request.priority == PRIORITY_PREFETCH && priority < PRIORITY_PREFETCH) {
+                    request.priority = priority;
+                    batch.add(request);
+                }
+            }
         }
+        return texture;
     }
 
-    public static void loadImage(Identifier i, Painting.Type type, ByteImage image) {
+    private static Painting.Texture getFallback(Painting painting, Painting.Type type) {
+        Painting.Type[] types = Painting.Type.values();
+        for (int i = type.ordinal() + 1; i < types.length; i++) {
+            if (painting.getTexture(types[i]).loaded) {
+                return painting.getTexture(types[i]);
+            }
+        }
+        for (int i = type.ordinal() - 1; i >= 0; i--) {
+            if (painting.getTexture(types[i]).loaded) {
+                return painting.getTexture(types[i]);
+            }
+        }
+        return painting.getTexture(type);
+    }
+
+    // re-prioritizes pending requests and cancels the ones nobody looked at recently
+    public static void tick() {
+        ClientTextureManager.tick();
+        ClientCatalog.tick();
+
+        if (++ticks % REPRIORITIZE_INTERVAL == 0) {
+            reprioritize();
+        }
+
+        flushRequests();
+    }
+
+    private static void reprioritize() {
+        long now = System.currentTimeMillis();
+        Iterator<PendingRequest> iterator = pendingRequests.values().iterator();
+        while (iterator.hasNext()) {
+            PendingRequest request = iterator.next();
+            if (request.texture.loaded) {
+                iterator.remove();
+            } else if (now - request.lastUsed > CANCEL_TIMEOUT) {
+                cancel(request);
+                iterator.remove();
+            } else if (request.wanted != Integer.MAX_VALUE && Math.abs(request.wanted - request.priority) >= PRIORITY_TOLERANCE) {
+                request.priority = request.wanted;
+                batch.add(request);
+            }
+            request.wanted = Integer.MAX_VALUE;
+        }
+    }
+
+    // a request which did not leave the client yet needs no cancellation
+    private static void cancel(PendingRequest request) {
+        request.texture.requested = false;
+        batch.remove(request);
+        if (request.sent) {
+            NetworkHandler.sendToServer(new ImageCancelRequest(request.identifier, request.type));
+        }
+    }
+
+    private static void flushRequests() {
+        Iterator<PendingRequest> iterator = batch.iterator();
+        while (iterator.hasNext()) {
+            List<ImageBatchRequest.Entry> entries = new ArrayList<>();
+            while (iterator.hasNext() && entries.size() < ImageBatchRequest.MAX_ENTRIES) {
+                PendingRequest request = iterator.next();
+                request.sent = true;
+                entries.add(new ImageBatchRequest.Entry(request.identifier, request.type, request.priority));
+            }
+            NetworkHandler.sendToServer(new ImageBatchRequest(entries));
+        }
+        batch.clear();
+    }
+
+    // decodes and converts on a worker thread, the upload is queued for the render thread
+    // only payloads which decoded fine are cached
+    public static void loadImageAsync(Identifier i, Painting.Type type, ImageCompression.Payload payload) {
         Painting painting = ClientPaintingManager.getPaintings().get(i);
+        if (painting == null) {
+            return;
+        }
         Painting.Texture texture = painting.getTexture(type);
-        loadImage(texture, image);
-        Cache.set(texture);
+
+        // the transfer is done on the server, promoting or reprioritizing it now would send the image twice
+        PendingRequest request = pendingRequests.remove(texture);
+        if (request != null) {
+            batch.remove(request);
+        }
+
+        CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return ClientUtils.payloadToNativeImage(payload);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, Util.getMainWorkerExecutor())
+                .whenCompleteAsync((image, e) -> {
+                    if (e != null) {
+                        // a broken transfer must not keep the texture on its fallback, the next use requests it again
+                        Main.LOGGER.error("Failed to decode image {} {}", i, type, e);
+                        texture.requested = false;
+                    } else if (ClientPaintingManager.getPaintings().get(i) == painting) {
+                        Cache.set(texture, payload);
+                        ClientTextureManager.queue(texture, image);
+                    } else {
+                        image.close();
+                    }
+                }, MinecraftClient.getInstance());
     }
 
-    public static void loadImage(Painting.Texture texture, @NotNull ByteImage image) {
-        texture.image = image;
-        NativeImage nativeImage = ClientUtils.byteImageToNativeImage(texture.image);
-        texture.textureIdentifier = MinecraftClient.getInstance().getTextureManager()
-                .registerDynamicTexture("immersive_painting/" + texture.hash, new NativeImageBackedTexture(nativeImage));
-        nativeImage.upload(0, 0, 0, false);
+    static class PendingRequest {
+        final Identifier identifier;
+        final Painting.Type type;
+        final Painting.Texture texture;
+        int priority;
+        int wanted = Integer.MAX_VALUE;
+        long lastUsed = System.currentTimeMillis();
+        boolean sent;
+
+        PendingRequest(Identifier identifier, Painting.Type type, Painting.Texture texture, int priority) {
+            this.identifier = identifier;
+            this.type = type;
+            this.texture = texture;
+            this.priority = priority;
+        }
+
+        void touch(int priority) {
+            wanted = Math.min(wanted, priority);
+            lastUsed = System.currentTimeMillis();
+        }
     }
 }
@@ -0,0 +1,163 @@
+package immersive_paintings.resources;
+
+import immersive_paintings.Config;
+import immersive_paintings.client.PaintingAtlas;
+import immersive_paintings.client.PaintingTexture;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.util.Util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// keeps track of every painting texture on the GPU
+// textures nobody rendered for a while are destroyed, and so are the least recently used ones once the budget is exceeded
+public class ClientTextureManager {
+    private static final int EVICTION_INTERVAL = 20;
+
+    private static final Map<Painting.Texture, Entry> textures = new LinkedHashMap<>(16, 0.75f, true);
+    private static final Map<Painting.Texture, NativeImage> uploads = new LinkedHashMap<>();
+    private static long usedBytes;
+    private static long ticks;
+
+    // converted images wait here, only a slice of them is uploaded per tick
+    public static void queue(Painting.Texture texture, NativeImage image) {
+        NativeImage previous = uploads.put(texture, image);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    private static void processUploads() {
+        long deadline = Util.getMeasuringTimeNano() + Config.getInstance().textureUploadMillisPerTick * 1000000L;
+        Iterator<Map.Entry<Painting.Texture, NativeImage>> iterator = uploads.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Painting.Texture, NativeImage> entry = iterator.next();
+            iterator.remove();
+            upload(entry.getKey(), entry.getValue());
+            if (Util.getMeasuringTimeNano() > deadline) {
+                break;
+            }
+        }
+    }
+
+    private static void upload(Painting.Texture texture, NativeImage nativeImage) {
+        release(texture);
+
+        int width = nativeImage.getWidth();
+        int height = nativeImage.getHeight();
+        Entry entry;
+        if (PaintingAtlas.fits(width, height)) {
+            PaintingAtlas.Region region = PaintingAtlas.allocate(nativeImage);
+            texture.textureIdentifier = region.getIdentifier();
+            texture.u0 = region.u0();
+            texture.v0 = region.v0();
+            texture.u1 = region.u1();
+            texture.v1 = region.v1();
+            entry = new Entry(PaintingAtlas.CELL_SIZE * PaintingAtlas.CELL_SIZE * 4, region);
+        } else {
+            texture.textureIdentifier = MinecraftClient.getInstance().getTextureManager()
+                    .registerDynamicTexture("immersive_painting/" + texture.hash, new PaintingTexture(nativeImage));
+            entry = new Entry((long)width * height * 4, null);
+        }
+        texture.width = width;
+        texture.height = height;
+        texture.loaded = true;
+
+        entry.lastUsed = ticks;
+        textures.put(texture, entry);
+        usedBytes += entry.bytes;
+
+        enforceBudget();
+    }
+
+    public static void touch(Painting.Texture texture) {
+        Entry entry = textures.get(texture);
+        if (entry != null) {
+            entry.lastUsed = ticks;
+        }
+    }
+
+    public static void tick() {
+        ticks++;
+        processUploads();
+
+        if (ticks % EVICTION_INTERVAL != 0) {
+            return;
+        }
+
+        long idle = Config.getInstance().textureIdleSeconds * 20L;
+        Iterator<Map.Entry<Painting.Texture, Entry>> iterator = textures.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Painting.Texture, Entry> entry = iterator.next();
+            if (ticks - entry.getValue().lastUsed > idle) {
+                destroy(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    public static void release(Painting.Texture texture) {
+        Entry entry = textures.remove(texture);
+        if (entry != null) {
+            destroy(texture, entry);
+        }
+        NativeImage queued = uploads.remove(texture);
+        if (queued != null) {
+            queued.close();
+        }
+    }
+
+    // for paintings which left the catalog
+    public static void release(Painting painting) {
+        painting.forEachTexture(ClientTextureManager::release);
+    }
+
+    public static void clear() {
+        uploads.values().forEach(NativeImage::close);
+        uploads.clear();
+        textures.forEach(ClientTextureManager::destroy);
+        textures.clear();
+    }
+
+    // textures used within the last tick stay, the visible set may exceed the budget on its own
+    private static void enforceBudget() {
+        long budget = Config.getInstance().textureBudgetMegabytes * 1024L * 1024L;
+        Iterator<Map.Entry<Painting.Texture, Entry>> iterator = textures.entrySet().iterator();
+        while (usedBytes > budget && iterator.hasNext()) {
+            Map.Entry<Painting.Texture, Entry> entry = iterator.next();
+            if (ticks - entry.getValue().lastUsed > 1) {
+                destroy(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void destroy(Painting.Texture texture, Entry entry) {
+        if (entry.region != null) {
+            PaintingAtlas.free(entry.region);
+        } else {
+            MinecraftClient.getInstance().getTextureManager().destroyTexture(texture.textureIdentifier);
+        }
+        texture.textureIdentifier = Painting.Texture.PLACEHOLDER;
+        texture.u0 = 0.0f;
+        texture.v0 = 0.0f;
+        texture.u1 = 1.0f;
+        texture.v1 = 1.0f;
+        texture.loaded = false;
+        texture.requested = false;
+        usedBytes -= entry.bytes;
+    }
+
+    private static class Entry {
+        final long bytes;
+        final PaintingAtlas.Region region;
+        long lastUsed;
+
+        Entry(long bytes, PaintingAtlas.Region region) {
+            this.bytes = bytes;
+            this.region = region;
+        }
+    }
+}
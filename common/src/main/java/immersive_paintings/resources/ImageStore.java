@@ -0,0 +1,80 @@
+package immersive_paintings.resources;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// player paintings stored by the digest of their pixels, identical uploads share one file
+public class ImageStore {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    public static String digest(ByteImage image) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        // the size is part of the digest, the same bytes may form images of different shapes
+        int width = image.getWidth();
+        int height = image.getHeight();
+        digest.update(new byte[] {
+                (byte)(width >> 24), (byte)(width >> 16), (byte)(width >> 8), (byte)width,
+                (byte)(height >> 24), (byte)(height >> 16), (byte)(height >> 8), (byte)height
+        });
+        digest.update(image.getBytes());
+
+        byte[] bytes = digest.digest();
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    public static Path getPath(String hash) {
+        return Path.of("immersive_paintings", "store", hash + ".png");
+    }
+
+    public static boolean contains(String hash) {
+        return getPath(hash).toFile().exists();
+    }
+
+    // written next to the target and moved into place, a crash or a concurrent identical upload never leaves a partial file behind
+    public static void write(String hash, ByteImage image) {
+        Path path = getPath(hash);
+        if (path.toFile().exists()) {
+            return;
+        }
+        try {
+            Files.createDirectories(path.getParent());
+            Path temp = Files.createTempFile(path.getParent(), hash, ".tmp");
+            try {
+                image.write(temp.toFile());
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static ByteImage read(String hash) throws IOException {
+        try (FileInputStream stream = new FileInputStream(getPath(hash).toFile())) {
+            return ByteImage.read(stream);
+        }
+    }
+
+    public static void delete(String hash) {
+        //noinspection ResultOfMethodCallIgnored
+        getPath(hash).toFile().delete();
+    }
+}
@@ -1,44 +1,42 @@
 package immersive_paintings.resources;
 
 import immersive_paintings.Main;
+import immersive_paintings.client.render.PaintingMeshes;
+import net.minecraft.resource.Resource;
 import net.minecraft.resource.ResourceManager;
 import net.minecraft.resource.SinglePreparationResourceReloader;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.profiler.Profiler;
-import owens.oobjloader.Builder;
-import owens.oobjloader.Face;
+import owens.oobjloader.FlatBuilder;
+import owens.oobjloader.FlatMesh;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class ObjectLoader extends SinglePreparationResourceReloader<List<Identifier>> {
+public class ObjectLoader extends SinglePreparationResourceReloader<Map<Identifier, FlatMesh>> {
     protected static final Identifier ID = Main.locate("objects");
 
-    public final static Map<Identifier, List<Face>> objects = new HashMap<>();
+    // replaced as a whole on reload, readers never see a half loaded map
+    public static volatile Map<Identifier, FlatMesh> objects = Map.of();
 
     @Override
-    protected List<Identifier> prepare(ResourceManager manager, Profiler profiler) {
-        return manager.findResources("objects", n -> n.endsWith(".obj")).stream().toList();
-    }
-
-    @Override
-    protected void apply(List<Identifier> o, ResourceManager manager, Profiler profiler) {
-        objects.clear();
-        o.forEach((id) -> {
-            try {
-                InputStream stream = manager.getResource(id).getInputStream();
-                ArrayList<Face> faces = new Builder(new BufferedReader(new InputStreamReader(stream))).faces;
-                Identifier newId = new Identifier(id.getNamespace(), id.getPath());
-                objects.put(newId, faces);
+    protected Map<Identifier, FlatMesh> prepare(ResourceManager manager, Profiler profiler) {
+        Map<Identifier, FlatMesh> map = new ConcurrentHashMap<>();
+        manager.findResources("objects", n -> n.endsWith(".obj")).parallelStream().forEach(id -> {
+            try (Resource resource = manager.getResource(id)) {
+                map.put(new Identifier(id.getNamespace(), id.getPath()), new FlatBuilder(resource.getInputStream()).build());
             } catch (IOException e) {
-                throw new RuntimeException(e);
+                Main.LOGGER.error("Couldn't load object {}", id, e);
             }
         });
+        return new HashMap<>(map);
+    }
+
+    @Override
+    protected void apply(Map<Identifier, FlatMesh> prepared, ResourceManager manager, Profiler profiler) {
+        objects = prepared;
+        PaintingMeshes.clear();
     }
 }
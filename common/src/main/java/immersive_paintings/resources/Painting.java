@@ -3,11 +3,12 @@ package immersive_paintings.resources;
 import immersive_paintings.Config;
 import immersive_paintings.Main;
 import net.minecraft.nbt.NbtCompound;
-import net.minecraft.resource.Resource;
 import net.minecraft.util.Identifier;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Locale;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public final class Painting {
     public int width;
@@ -18,32 +19,17 @@ public final class Painting {
     public final String author;
     public boolean datapack;
 
-    public Texture texture;
-    public Texture half;
-    public Texture quarter;
-    public Texture eighth;
-    public Texture thumbnail;
+    public final String hash;
+
+    // levels below the full one are only created once used, most paintings of a large catalog are never displayed
+    private final Texture[] textures = new Texture[Type.values().length];
 
     public Painting(@Nullable ByteImage image, int width, int height, int resolution) {
         this(image, width, height, resolution, "", "", false, UUID.randomUUID().toString());
     }
 
     public Painting(@Nullable ByteImage image, int width, int height, int resolution, String name, String author, boolean datapack, String hash) {
-        this.texture = new Texture(image, hash, Type.FULL);
-
-        int res = Math.max(width, height) * resolution;
-
-        Type halfType = res / 2 < Config.getInstance().lodResolutionMinimum ? Type.FULL : Type.HALF;
-        this.half = new Texture(null, hash + "_half", halfType);
-
-        Type quarterType = res / 4 < Config.getInstance().lodResolutionMinimum ? halfType : Type.QUARTER;
-        this.quarter = new Texture(null, hash + "_quarter", quarterType);
-
-        Type eighthType = res / 8 < Config.getInstance().lodResolutionMinimum ? quarterType : Type.EIGHTH;
-        this.eighth = new Texture(null, hash + "_eighth", eighthType);
-
-        Type thumbnailType = res < Config.getInstance().thumbnailSize ? Type.FULL : Type.THUMBNAIL;
-        this.thumbnail = new Texture(null, hash + "_thumbnail", thumbnailType);
+        this.textures[Type.FULL.ordinal()] = new Texture(image, hash, Type.FULL);
 
         this.width = width;
         this.height = height;
@@ -51,6 +37,7 @@ public final class Painting {
         this.name = name;
         this.author = author;
         this.datapack = datapack;
+        this.hash = hash;
     }
 
     public Painting(ByteImage image, int resolution) {
@@ -65,7 +52,7 @@ public final class Painting {
         nbt.putString("name", name);
         nbt.putString("author", author);
         nbt.putBoolean("datapack", datapack);
-        nbt.putString("hash", texture.hash);
+        nbt.putString("hash", hash);
         return nbt;
     }
 
@@ -80,13 +67,34 @@ public final class Painting {
         return new Painting(null, width, height, resolution, name, author, datapack, hash);
     }
 
-    public Texture getTexture(Type type) {
+    public synchronized Texture getTexture(Type type) {
+        Texture texture = textures[type.ordinal()];
+        if (texture == null) {
+            texture = new Texture(null, hash + "_" + type.name().toLowerCase(Locale.ROOT), getLink(type));
+            textures[type.ordinal()] = texture;
+        }
+        return texture;
+    }
+
+    // only the levels created so far
+    public synchronized void forEachTexture(Consumer<Texture> consumer) {
+        for (Texture texture : textures) {
+            if (texture != null) {
+                consumer.accept(texture);
+            }
+        }
+    }
+
+    // levels which would fall below the minimum resolution use the next larger one instead
+    private Type getLink(Type type) {
+        int res = Math.max(width, height) * resolution;
+        int minimum = Config.getInstance().lodResolutionMinimum;
         return switch (type) {
-            case FULL -> texture;
-            case HALF -> half;
-            case QUARTER -> quarter;
-            case EIGHTH -> eighth;
-            case THUMBNAIL -> thumbnail;
+            case FULL -> Type.FULL;
+            case HALF -> res / 2 < minimum ? Type.FULL : Type.HALF;
+            case QUARTER -> res / 4 < minimum ? getLink(Type.HALF) : Type.QUARTER;
+            case EIGHTH -> res / 8 < minimum ? getLink(Type.QUARTER) : Type.EIGHTH;
+            case THUMBNAIL -> res < Config.getInstance().thumbnailSize ? Type.FULL : Type.THUMBNAIL;
         };
     }
 
@@ -99,10 +107,20 @@ public final class Painting {
     }
 
     public static class Texture {
+        public static final Identifier PLACEHOLDER = Main.locate("textures/block/frame/canvas.png");
+
         public ByteImage image;
+        public int width;
+        public int height;
+        public boolean loaded = false;
         public boolean requested = false;
-        public Identifier textureIdentifier = Main.locate("textures/block/frame/canvas.png");
-        public Resource resource;
+        public Identifier textureIdentifier = PLACEHOLDER;
+        // region within textureIdentifier, textures packed into the atlas only cover part of it
+        public float u0 = 0.0f;
+        public float v0 = 0.0f;
+        public float u1 = 1.0f;
+        public float v1 = 1.0f;
+        public Identifier resource;
         public final String hash;
         public final Type link;
 
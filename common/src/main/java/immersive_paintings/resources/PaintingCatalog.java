@@ -0,0 +1,162 @@
+package immersive_paintings.resources;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.util.Identifier;
+import net.minecraft.world.PersistentState;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+// revision history of the painting list, lets reconnecting clients fetch only what changed since their snapshot
+// the epoch identifies the history, a client holding a snapshot of another epoch has to resync completely
+public class PaintingCatalog extends PersistentState {
+    private static final int MAX_TOMBSTONES = 4096;
+
+    private long epoch = new Random().nextLong();
+    private long revision;
+    // tombstones older than this got pruned, deltas starting below it would miss removals
+    private long floor;
+
+    private final Map<Identifier, Entry> entries = new HashMap<>();
+    private final Map<Identifier, Long> tombstones = new HashMap<>();
+
+    public static PaintingCatalog fromNbt(NbtCompound nbt) {
+        PaintingCatalog catalog = new PaintingCatalog();
+        catalog.epoch = nbt.getLong("epoch");
+        catalog.revision = nbt.getLong("revision");
+        catalog.floor = nbt.getLong("floor");
+
+        NbtCompound entries = nbt.getCompound("entries");
+        for (String key : entries.getKeys()) {
+            NbtCompound entry = entries.getCompound(key);
+            catalog.entries.put(new Identifier(key), new Entry(entry.getLong("revision"), entry.getByteArray("digest")));
+        }
+
+        NbtCompound tombstones = nbt.getCompound("tombstones");
+        for (String key : tombstones.getKeys()) {
+            catalog.tombstones.put(new Identifier(key), tombstones.getLong(key));
+        }
+        return catalog;
+    }
+
+    @Override
+    public NbtCompound writeNbt(NbtCompound nbt) {
+        nbt.putLong("epoch", epoch);
+        nbt.putLong("revision", revision);
+        nbt.putLong("floor", floor);
+
+        NbtCompound entries = new NbtCompound();
+        for (Map.Entry<Identifier, Entry> entry : this.entries.entrySet()) {
+            NbtCompound c = new NbtCompound();
+            c.putLong("revision", entry.getValue().revision());
+            c.putByteArray("digest", entry.getValue().digest());
+            entries.put(entry.getKey().toString(), c);
+        }
+        nbt.put("entries", entries);
+
+        NbtCompound tombstones = new NbtCompound();
+        for (Map.Entry<Identifier, Long> entry : this.tombstones.entrySet()) {
+            tombstones.putLong(entry.getKey().toString(), entry.getValue());
+        }
+        nbt.put("tombstones", tombstones);
+        return nbt;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    // bumps the revision if the painting is new or its metadata changed
+    public void update(Identifier identifier, Painting painting) {
+        byte[] digest = digest(painting);
+        Entry entry = entries.get(identifier);
+        if (entry == null || !Arrays.equals(entry.digest(), digest)) {
+            revision++;
+            entries.put(identifier, new Entry(revision, digest));
+            tombstones.remove(identifier);
+            setDirty(true);
+        }
+    }
+
+    public void remove(Identifier identifier) {
+        if (entries.remove(identifier) != null) {
+            revision++;
+            tombstones.put(identifier, revision);
+            pruneTombstones();
+            setDirty(true);
+        }
+    }
+
+    // brings the history in line with the current paintings, e.g. after datapacks changed while the server was down
+    public void reconcile(Map<Identifier, Painting> paintings) {
+        for (Map.Entry<Identifier, Painting> entry : paintings.entrySet()) {
+            update(entry.getKey(), entry.getValue());
+        }
+        for (Identifier identifier : List.copyOf(entries.keySet())) {
+            if (!paintings.containsKey(identifier)) {
+                remove(identifier);
+            }
+        }
+    }
+
+    // whether a client at the given revision can be brought up to date with a delta
+    public boolean canDelta(long epoch, long revision) {
+        return epoch == this.epoch && revision >= floor && revision <= this.revision;
+    }
+
+    // identifiers changed after the given revision, removed ones map to false
+    public Map<Identifier, Boolean> getChanges(long since) {
+        Map<Identifier, Boolean> changes = new LinkedHashMap<>();
+        for (Map.Entry<Identifier, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().revision() > since) {
+                changes.put(entry.getKey(), true);
+            }
+        }
+        for (Map.Entry<Identifier, Long> entry : tombstones.entrySet()) {
+            if (entry.getValue() > since) {
+                changes.put(entry.getKey(), false);
+            }
+        }
+        return changes;
+    }
+
+    // collisions would keep serving stale metadata, so a cryptographic digest over the fields in a fixed order
+    private static byte[] digest(Painting painting) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream stream = new DataOutputStream(bytes);
+            stream.writeInt(painting.width);
+            stream.writeInt(painting.height);
+            stream.writeInt(painting.resolution);
+            stream.writeUTF(painting.name);
+            stream.writeUTF(painting.author);
+            stream.writeBoolean(painting.datapack);
+            stream.writeUTF(painting.hash);
+            return MessageDigest.getInstance("SHA-256").digest(bytes.toByteArray());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void pruneTombstones() {
+        if (tombstones.size() > MAX_TOMBSTONES) {
+            List<Map.Entry<Identifier, Long>> sorted = new ArrayList<>(tombstones.entrySet());
+            sorted.sort(Map.Entry.comparingByValue());
+            for (Map.Entry<Identifier, Long> entry : sorted.subList(0, sorted.size() - MAX_TOMBSTONES / 2)) {
+                floor = Math.max(floor, entry.getValue());
+                tombstones.remove(entry.getKey());
+            }
+        }
+    }
+
+    private record Entry(long revision, byte[] digest) {
+    }
+}
@@ -0,0 +1,273 @@
+package immersive_paintings.resources;
+
+import net.minecraft.util.Identifier;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+// lookup structures over the client's paintings, updated together with the painting list
+// text is matched through trigrams of the lower case identifier and name, author and sizes use exact buckets
+public class PaintingSearchIndex {
+    private static final int MIN_COMPACT = 1024;
+
+    // every painting gets a slot, removed ones leave a hole until the next compaction
+    private static final List<Identifier> identifiers = new ArrayList<>();
+    private static final List<Painting> paintings = new ArrayList<>();
+    private static final List<String> texts = new ArrayList<>();
+    private static final Map<Identifier, Integer> slots = new HashMap<>();
+    private static int holes;
+    private static long version;
+
+    // postings may point at holes and trigrams can collide, candidates are always verified
+    private static final Map<Integer, Postings> trigrams = new HashMap<>();
+    private static final Map<Integer, Set<Integer>> byResolution = new HashMap<>();
+    private static final Map<Integer, Set<Integer>> byWidth = new HashMap<>();
+    private static final Map<Integer, Set<Integer>> byHeight = new HashMap<>();
+    private static final Map<String, Set<Integer>> byAuthor = new HashMap<>();
+
+    public static void put(Identifier identifier, Painting painting) {
+        remove(identifier);
+
+        int slot = identifiers.size();
+        String text = getText(identifier, painting);
+        identifiers.add(identifier);
+        paintings.add(painting);
+        texts.add(text);
+        slots.put(identifier, slot);
+
+        byResolution.computeIfAbsent(painting.resolution, k -> new HashSet<>()).add(slot);
+        byWidth.computeIfAbsent(painting.width, k -> new HashSet<>()).add(slot);
+        byHeight.computeIfAbsent(painting.height, k -> new HashSet<>()).add(slot);
+        byAuthor.computeIfAbsent(painting.author, k -> new HashSet<>()).add(slot);
+
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            int trigram = trigram(text, i);
+            if (seen.add(trigram)) {
+                trigrams.computeIfAbsent(trigram, k -> new Postings()).add(slot);
+            }
+        }
+        version++;
+    }
+
+    public static void remove(Identifier identifier) {
+        Integer slot = slots.remove(identifier);
+        if (slot == null) {
+            return;
+        }
+
+        Painting painting = paintings.get(slot);
+        removeFromBucket(byResolution, painting.resolution, slot);
+        removeFromBucket(byWidth, painting.width, slot);
+        removeFromBucket(byHeight, painting.height, slot);
+        removeFromBucket(byAuthor, painting.author, slot);
+
+        identifiers.set(slot, null);
+        paintings.set(slot, null);
+        texts.set(slot, null);
+        holes++;
+        version++;
+
+        if (holes > MIN_COMPACT && holes > identifiers.size() / 2) {
+            compact();
+        }
+    }
+
+    public static void clear() {
+        identifiers.clear();
+        paintings.clear();
+        texts.clear();
+        slots.clear();
+        trigrams.clear();
+        byResolution.clear();
+        byWidth.clear();
+        byHeight.clear();
+        byAuthor.clear();
+        holes = 0;
+        version++;
+    }
+
+    // matching identifiers in slot order, a null author and a value of 0 disable the respective filters
+    public static List<Identifier> search(String text, Predicate<Painting> filter, String author, int resolution, int width, int height) {
+        return toIdentifiers(searchSlots(text.toLowerCase(Locale.ROOT), filter, author, resolution, width, height));
+    }
+
+    private static int[] searchSlots(String query, Predicate<Painting> filter, String author, int resolution, int width, int height) {
+        Candidates candidates = getCandidates(query, author, resolution, width, height);
+        int[] result = new int[Math.min(candidates.size(), identifiers.size())];
+        int size = 0;
+        BitSet seen = new BitSet(identifiers.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            int slot = candidates.get(i);
+            if (!seen.get(slot) && matches(slot, query, filter, author, resolution, width, height)) {
+                result[size++] = slot;
+            }
+            seen.set(slot);
+        }
+        Arrays.sort(result, 0, size);
+        return Arrays.copyOf(result, size);
+    }
+
+    // the smallest posting list or bucket narrowing the search, or every slot if no filter applies
+    private static Candidates getCandidates(String query, String author, int resolution, int width, int height) {
+        Candidates best = null;
+        for (int i = 0; i + 3 <= query.length(); i++) {
+            Postings postings = trigrams.get(trigram(query, i));
+            if (postings == null) {
+                return Candidates.EMPTY;
+            }
+            if (best == null || postings.size < best.size()) {
+                best = postings;
+            }
+        }
+        best = smaller(best, byAuthor, author);
+        best = smaller(best, byResolution, resolution == 0 ? null : resolution);
+        best = smaller(best, byWidth, width == 0 ? null : width);
+        best = smaller(best, byHeight, height == 0 ? null : height);
+        return best == null ? new Range(identifiers.size()) : best;
+    }
+
+    private static <K> Candidates smaller(Candidates best, Map<K, Set<Integer>> buckets, K key) {
+        if (key == null) {
+            return best;
+        }
+        Set<Integer> bucket = buckets.get(key);
+        if (bucket == null) {
+            return Candidates.EMPTY;
+        }
+        if (best == null || bucket.size() < best.size()) {
+            Postings postings = new Postings();
+            bucket.forEach(postings::add);
+            return postings;
+        }
+        return best;
+    }
+
+    private static boolean matches(int slot, String query, Predicate<Painting> filter, String author, int resolution, int width, int height) {
+        Painting painting = paintings.get(slot);
+        return painting != null
+                && (author == null || author.equals(painting.author))
+                && (resolution == 0 || painting.resolution == resolution)
+                && (width == 0 || painting.width == width)
+                && (height == 0 || painting.height == height)
+                && texts.get(slot).contains(query)
+                && filter.test(painting);
+    }
+
+    private static List<Identifier> toIdentifiers(int[] slots) {
+        List<Identifier> list = new ArrayList<>(slots.length);
+        for (int slot : slots) {
+            list.add(identifiers.get(slot));
+        }
+        return list;
+    }
+
+    private static void compact() {
+        List<Identifier> identifiers = new ArrayList<>(PaintingSearchIndex.identifiers);
+        List<Painting> paintings = new ArrayList<>(PaintingSearchIndex.paintings);
+        clear();
+        for (int i = 0; i < identifiers.size(); i++) {
+            if (identifiers.get(i) != null) {
+                put(identifiers.get(i), paintings.get(i));
+            }
+        }
+    }
+
+    private static <K> void removeFromBucket(Map<K, Set<Integer>> buckets, K key, int slot) {
+        Set<Integer> bucket = buckets.get(key);
+        if (bucket != null) {
+            bucket.remove(slot);
+            if (bucket.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+    }
+
+    private static String getText(Identifier identifier, Painting painting) {
+        return (identifier.toString() + "\n" + painting.name).toLowerCase(Locale.ROOT);
+    }
+
+    private static int trigram(String text, int i) {
+        return (text.charAt(i) * 31 + text.charAt(i + 1)) * 31 + text.charAt(i + 2);
+    }
+
+    // keeps the last result, typing more characters only has to check the previous matches again
+    public static class Search {
+        private String query;
+        private Object filterKey;
+        private String author;
+        private int resolution;
+        private int width;
+        private int height;
+        private long version = -1;
+        private int[] result;
+
+        // the filter key identifies the filter, a different key starts a fresh search
+        public List<Identifier> run(String text, Object filterKey, Predicate<Painting> filter, String author, int resolution, int width, int height) {
+            String query = text.toLowerCase(Locale.ROOT);
+            boolean refine = this.version == PaintingSearchIndex.version
+                    && this.query != null && query.contains(this.query)
+                    && Objects.equals(this.filterKey, filterKey) && Objects.equals(this.author, author)
+                    && this.resolution == resolution && this.width == width && this.height == height;
+
+            if (refine) {
+                int size = 0;
+                int[] refined = new int[result.length];
+                for (int slot : result) {
+                    if (matches(slot, query, filter, author, resolution, width, height)) {
+                        refined[size++] = slot;
+                    }
+                }
+                result = Arrays.copyOf(refined, size);
+            } else {
+                result = searchSlots(query, filter, author, resolution, width, height);
+            }
+
+            this.query = query;
+            this.filterKey = filterKey;
+            this.author = author;
+            this.resolution = resolution;
+            this.width = width;
+            this.height = height;
+            this.version = PaintingSearchIndex.version;
+            return toIdentifiers(result);
+        }
+    }
+
+    private interface Candidates {
+        Candidates EMPTY = new Range(0);
+
+        int size();
+
+        int get(int i);
+    }
+
+    private record Range(int size) implements Candidates {
+        @Override
+        public int get(int i) {
+            return i;
+        }
+    }
+
+    private static class Postings implements Candidates {
+        private int[] slots = new int[4];
+        private int size;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int get(int i) {
+            return slots[i];
+        }
+    }
+}
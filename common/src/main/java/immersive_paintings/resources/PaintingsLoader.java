@@ -1,8 +1,8 @@
 package immersive_paintings.resources;
 
-import com.google.common.collect.Maps;
 import com.google.gson.*;
 import com.mojang.logging.LogUtils;
+import net.minecraft.resource.Resource;
 import net.minecraft.resource.ResourceManager;
 import net.minecraft.resource.SinglePreparationResourceReloader;
 import net.minecraft.util.Identifier;
@@ -15,33 +15,46 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class PaintingsLoader extends SinglePreparationResourceReloader<Map<Identifier, Painting>> {
     private static final Logger LOGGER = LogUtils.getLogger();
     private static final int FILE_SUFFIX_LENGTH = ".json".length();
     private final Gson gson = new GsonBuilder().create();
+    private static final byte[] PNG_SIGNATURE = {(byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int MAX_BLOCKS = 16;
     String dataType = "paintings";
 
+    // json sidecars are parsed in parallel, only the finished map is published in apply
     @Override
     protected Map<Identifier, Painting> prepare(ResourceManager manager, Profiler profiler) {
-        Map<Identifier, Painting> map = Maps.newHashMap();
-        int dataTypeLength = dataType.length() + 1;
+        Map<Identifier, Painting> map = new ConcurrentHashMap<>();
+        manager.findResources(dataType, (path) -> path.endsWith(".png")).parallelStream().forEach(identifier -> {
+            Painting painting = loadPainting(manager, identifier);
+            if (painting != null) {
+                map.put(identifier, painting);
+            }
+        });
+        return new HashMap<>(map);
+    }
 
-        for (Identifier identifier : manager.findResources(dataType, (path) -> path.endsWith(".png"))) {
-            String string = identifier.getPath();
-            Identifier imageIdentifier = new Identifier(identifier.getNamespace(), string.substring(dataTypeLength, string.length() - FILE_SUFFIX_LENGTH));
+    private Painting loadPainting(ResourceManager manager, Identifier identifier) {
+        int dataTypeLength = dataType.length() + 1;
+        String string = identifier.getPath();
+        Identifier imageIdentifier = new Identifier(identifier.getNamespace(), string.substring(dataTypeLength, string.length() - FILE_SUFFIX_LENGTH));
 
-            try {
-                Identifier jsonIdentifier = new Identifier(identifier.getNamespace(), string.replace(".png", ".json"));
+        try {
+            Identifier jsonIdentifier = new Identifier(identifier.getNamespace(), string.replace(".png", ".json"));
 
-                String hash = identifier.toString().replaceAll("[^a-zA-Z\\d]", "");
+            String hash = identifier.toString().replaceAll("[^a-zA-Z\\d]", "");
 
-                Painting painting;
-                if (manager.containsResource(jsonIdentifier)) {
-                    InputStream inputStream = manager.getResource(jsonIdentifier).getInputStream();
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            Painting painting;
+            if (manager.containsResource(jsonIdentifier)) {
+                try (Resource resource = manager.getResource(jsonIdentifier)) {
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8));
                     JsonObject jsonElement = Objects.requireNonNull(JsonHelper.deserialize(gson, reader, JsonElement.class)).getAsJsonObject();
 
                     int width = JsonHelper.getInt(jsonElement, "width", 1);
@@ -51,19 +64,74 @@ public class PaintingsLoader extends SinglePreparationResourceReloader<Map<Ident
                     String author = JsonHelper.getString(jsonElement, "author", "unknown");
 
                     painting = new Painting(null, width, height, resolution, name, author, true, hash);
-                } else {
-                    painting = new Painting(null, 1, 1, 32, "unknown", "unknown", true, hash);
                 }
+            } else {
+                painting = inferPainting(manager, identifier, hash);
+            }
 
-                painting.texture.resource = manager.getResource(identifier);
+            painting.getTexture(Painting.Type.FULL).resource = identifier;
+            return painting;
+        } catch (IllegalArgumentException | IOException | JsonParseException exception) {
+            LOGGER.error("Couldn't load painting {} from {} ({})", imageIdentifier, identifier, exception);
+            return null;
+        }
+    }
 
-                map.put(identifier, painting);
-            } catch (IllegalArgumentException | IOException | JsonParseException exception) {
-                LOGGER.error("Couldn't load painting {} from {} ({})", imageIdentifier, identifier, exception);
+    // without a sidecar the size is derived from the png header, the pixels are not decoded
+    private Painting inferPainting(ResourceManager manager, Identifier identifier, String hash) throws IOException {
+        int[] size;
+        try (Resource resource = manager.getResource(identifier)) {
+            size = readPngSize(resource.getInputStream());
+        }
+        if (size == null) {
+            return new Painting(null, 1, 1, 32, "unknown", "unknown", true, hash);
+        }
+
+        int pixelWidth = size[0];
+        int pixelHeight = size[1];
+
+        // the smallest whole block layout with the image's aspect ratio, or the closest one if that gets too large
+        int resolution = gcd(pixelWidth, pixelHeight);
+        if (pixelWidth / resolution > MAX_BLOCKS || pixelHeight / resolution > MAX_BLOCKS) {
+            resolution = (Math.max(pixelWidth, pixelHeight) + MAX_BLOCKS - 1) / MAX_BLOCKS;
+        }
+        int width = Math.max(1, Math.round((float)pixelWidth / resolution));
+        int height = Math.max(1, Math.round((float)pixelHeight / resolution));
+
+        return new Painting(null, width, height, resolution, "unknown", "unknown", true, hash);
+    }
+
+    // width and height from the IHDR chunk, which the png format requires to come first
+    // anything too short to hold it is treated like an unknown format
+    private static int[] readPngSize(InputStream stream) throws IOException {
+        byte[] header = new byte[24];
+        if (stream.readNBytes(header, 0, header.length) < header.length) {
+            return null;
+        }
+        for (int i = 0; i < PNG_SIGNATURE.length; i++) {
+            if (header[i] != PNG_SIGNATURE[i]) {
+                return null;
             }
         }
+        if (header[12] != 'I' || header[13] != 'H' || header[14] != 'D' || header[15] != 'R') {
+            return null;
+        }
+        int width = readInt(header, 16);
+        int height = readInt(header, 20);
+        return width > 0 && height > 0 ? new int[] {width, height} : null;
+    }
 
-        return map;
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16 | (bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
     }
 
     @Override
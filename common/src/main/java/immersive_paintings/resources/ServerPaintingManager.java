@@ -1,58 +1,170 @@
 package immersive_paintings.resources;
 
 import immersive_paintings.Config;
+import immersive_paintings.Main;
+import immersive_paintings.network.LazyNetworkManager;
+import immersive_paintings.util.ImageCompression;
 import immersive_paintings.util.ImageManipulations;
+import immersive_paintings.util.LruCache;
 import net.minecraft.nbt.NbtCompound;
+import net.minecraft.resource.Resource;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.Identifier;
 import net.minecraft.world.PersistentState;
 
-import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
 
 public class ServerPaintingManager {
     public static MinecraftServer server;
-    private static Map<Identifier, Painting> datapackPaintings = new HashMap<>();
+    private static volatile Map<Identifier, Painting> datapackPaintings = new HashMap<>();
+    private static volatile boolean catalogOutdated = true;
+    private static final int STATS_INTERVAL = 20 * 60 * 10;
+    private static int ticks;
+
+    private static final ExecutorService imageExecutor = Executors.newFixedThreadPool(Math.max(1, Config.getInstance().imageWorkerThreads), r -> {
+        Thread thread = new Thread(r, "Immersive Paintings Image Worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Map<ImageKey, CompletableFuture<ByteImage>> pendingImages = new ConcurrentHashMap<>();
+
+    // decoded pixels and encoded payloads are only cached, evicted entries get reloaded from disk or the datapack
+    private static final LruCache<ImageKey, ByteImage> imageCache = new LruCache<>(
+            image -> image.getBytes().length,
+            () -> Config.getInstance().serverImageCacheMegabytes * 1024L * 1024L
+    );
+    private static final LruCache<ImageKey, ImageCompression.Payload> payloadCache = new LruCache<>(
+            payload -> payload.data().length,
+            () -> Config.getInstance().serverPayloadCacheMegabytes * 1024L * 1024L
+    );
 
     public static CustomServerPaintings get() {
         return server.getOverworld().getPersistentStateManager()
                 .getOrCreate(CustomServerPaintings::fromNbt, CustomServerPaintings::new, "immersive_paintings");
     }
 
+    public static PaintingCatalog getCatalog() {
+        PaintingCatalog catalog = server.getOverworld().getPersistentStateManager()
+                .getOrCreate(PaintingCatalog::fromNbt, PaintingCatalog::new, "immersive_paintings_catalog");
+        if (catalogOutdated) {
+            catalogOutdated = false;
+            catalog.reconcile(getPaintings());
+        }
+        return catalog;
+    }
+
+    // datapack and custom paintings, datapack ones take precedence as in getPainting
+    public static Map<Identifier, Painting> getPaintings() {
+        Map<Identifier, Painting> paintings = new HashMap<>(get().getCustomServerPaintings());
+        paintings.putAll(datapackPaintings);
+        return paintings;
+    }
+
     public static Map<Identifier, Painting> getDatapackPaintings() {
         return datapackPaintings;
     }
 
     public static void setDatapackPaintings(Map<Identifier, Painting> datapackPaintings) {
+        Map<Identifier, Painting> previous = ServerPaintingManager.datapackPaintings;
         ServerPaintingManager.datapackPaintings = datapackPaintings;
+        invalidate(previous::containsKey);
+
+        // datapacks load before the world, the catalog catches up on its next use
+        catalogOutdated = true;
     }
 
+    // location used before paintings were stored by content, still read for paintings registered back then
     public static Path getPaintingPath(Identifier identifier) {
         return Path.of("immersive_paintings", identifier.toString().replace(":", "_") + ".png");
     }
 
     public static void registerPainting(Identifier identifier, Painting painting) {
         Painting.Texture texture = painting.getTexture(Painting.Type.FULL);
-        if (texture.image != null) {
-            Path path = getPaintingPath(identifier);
-            //noinspection ResultOfMethodCallIgnored
-            new File(path.getParent().toString()).mkdirs();
-            texture.image.write(path.toFile());
+        ByteImage image = texture.image;
+        if (image != null) {
+            ImageStore.write(texture.hash, image);
+
+            // from here on the pixels are only held by the cache and reloaded from disk when needed
+            texture.image = null;
+            invalidate(identifier::equals);
+            imageCache.put(new ImageKey(identifier, Painting.Type.FULL), image);
         }
 
-        get().getCustomServerPaintings().put(identifier, painting);
+        Painting previous = get().put(identifier, painting);
         get().setDirty(true);
+        getCatalog().update(identifier, painting);
+
+        if (previous != null) {
+            release(identifier, previous);
+        }
+
+        if (image != null) {
+            generateLodsAsync(identifier, painting);
+        }
+    }
+
+    // decoding, hashing and writing a large upload takes a while, all of it happens off the server thread
+    public static CompletableFuture<StoredImage> storeAsync(ImageCompression.Payload payload) {
+        return CompletableFuture.supplyAsync(() -> {
+            ByteImage image;
+            try {
+                image = ImageCompression.decode(payload);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            String hash = ImageStore.digest(image);
+            ImageStore.write(hash, image);
+            return new StoredImage(image, hash);
+        }, imageExecutor);
+    }
+
+    public record StoredImage(ByteImage image, String hash) {
     }
 
     public static void deregisterPainting(Identifier identifier) {
-        get().getCustomServerPaintings().remove(identifier);
+        LazyNetworkManager.cancel(identifier);
+        invalidate(identifier::equals);
+        Painting painting = get().remove(identifier);
         get().setDirty(true);
+        if (!datapackPaintings.containsKey(identifier)) {
+            getCatalog().remove(identifier);
+        }
+        if (painting != null) {
+            release(identifier, painting);
+        }
+    }
+
+    // stored images are shared between paintings with the same content, the file goes once nothing references it
+    private static void release(Identifier identifier, Painting painting) {
         //noinspection ResultOfMethodCallIgnored
         getPaintingPath(identifier).toFile().delete();
+
+        String hash = painting.hash;
+        if (getReferences(hash) == 0) {
+            ImageStore.delete(hash);
+        }
+    }
+
+    public static int getReferences(String hash) {
+        return get().getReferences(hash);
+    }
+
+    private static void invalidate(Predicate<Identifier> predicate) {
+        imageCache.removeIf(key -> predicate.test(key.identifier()));
+        payloadCache.removeIf(key -> predicate.test(key.identifier()));
     }
 
     public static Painting getPainting(Identifier i) {
@@ -61,76 +173,196 @@ public class ServerPaintingManager {
         } else {return get().customServerPaintings.getOrDefault(i, null);}
     }
 
-    public static ByteImage getImage(Identifier i, Painting.Type type) {
+    public static void tick() {
+        if (++ticks % STATS_INTERVAL == 0) {
+            Main.LOGGER.info("Painting image cache: {}, payload cache: {}", imageCache, payloadCache);
+        }
+    }
+
+    // loads or generates the image off the server thread, concurrent requests for the same image share one future
+    public static CompletableFuture<ByteImage> getImageAsync(Identifier i, Painting.Type type) {
         Painting painting = getPainting(i);
-        Painting.Texture texture = painting.getTexture(type);
-
-        if (type == Painting.Type.FULL) {
-            //todo think about caching
-            if (texture.image == null) {
-                try {
-                    if (texture.resource != null) {
-                        return texture.image = ByteImage.read(texture.resource.getInputStream());
-                    } else if (get().customServerPaintings.containsKey(i)) {
-                        FileInputStream stream = new FileInputStream(getPaintingPath(i).toString());
-                        texture.image = ByteImage.read(stream);
+        if (painting == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        ImageKey key = new ImageKey(i, type);
+        ByteImage image = imageCache.get(key);
+        if (image != null) {
+            return CompletableFuture.completedFuture(image);
+        }
+
+        CompletableFuture<ByteImage> future = pendingImages.get(key);
+        if (future == null) {
+            CompletableFuture<ByteImage> created = new CompletableFuture<>();
+            future = pendingImages.putIfAbsent(key, created);
+            if (future == null) {
+                future = created;
+                imageExecutor.execute(() -> {
+                    try {
+                        created.complete(getImage(i, painting, type));
+                    } catch (Exception e) {
+                        Main.LOGGER.error("Failed to load image {} {}", i, type, e);
+                        created.completeExceptionally(e);
+                    } finally {
+                        pendingImages.remove(key, created);
                     }
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
+                });
+            }
+        }
+        return future;
+    }
+
+    // compressed payloads are encoded once per level and reused for every player requesting them
+    public static CompletableFuture<ImageCompression.Payload> getPayloadAsync(Identifier i, Painting.Type type, boolean compressed) {
+        ImageKey key = new ImageKey(i, type);
+        if (compressed) {
+            ImageCompression.Payload payload = payloadCache.get(key);
+            if (payload != null) {
+                return CompletableFuture.completedFuture(payload);
+            }
+        }
+
+        return getImageAsync(i, type).thenApplyAsync(image -> {
+            if (image == null) {
+                return null;
+            } else if (!compressed) {
+                return ImageCompression.encode(image, false);
+            }
+            ImageCompression.Payload payload = ImageCompression.encode(image, true);
+            payloadCache.put(key, payload);
+            return payload;
+        }, imageExecutor);
+    }
+
+    private static ByteImage getImage(Identifier i, Painting painting, Painting.Type type) {
+        ImageKey key = new ImageKey(i, type);
+        ByteImage image = imageCache.get(key);
+        if (image != null) {
+            return image;
+        }
+
+        // lod generation reads the full image too, the lock makes both share one read
+        synchronized (painting) {
+            image = imageCache.get(key);
+            if (image != null) {
+                return image;
+            }
+
+            if (type == Painting.Type.FULL) {
+                image = readImage(i, painting);
+            } else {
+                image = Cache.get(painting.getTexture(type)).orElse(null);
+                if (image == null) {
+                    image = generateLods(i, painting).get(type);
                 }
             }
-        } else {
-            Cache.get(texture)
-                    .ifPresentOrElse((image) -> texture.image = image,
-                            () -> {
-                                ByteImage image = getImage(i, Painting.Type.FULL);
 
-                                int w, h;
-                                if (type == Painting.Type.THUMBNAIL) {
-                                    float zoom = Math.min(
-                                            (float)Config.getInstance().thumbnailSize / image.getWidth(),
-                                            (float)Config.getInstance().thumbnailSize / image.getHeight()
-                                    );
+            if (image != null) {
+                imageCache.put(key, image);
+            }
+        }
+        return image;
+    }
+
+    private static ByteImage readImage(Identifier i, Painting painting) {
+        Painting.Texture texture = painting.getTexture(Painting.Type.FULL);
+        try {
+            if (texture.resource != null) {
+                try (Resource resource = server.getResourceManager().getResource(texture.resource)) {
+                    return ByteImage.read(resource.getInputStream());
+                }
+            } else if (!painting.datapack) {
+                if (ImageStore.contains(texture.hash)) {
+                    return ImageStore.read(texture.hash);
+                }
+                try (FileInputStream stream = new FileInputStream(getPaintingPath(i).toString())) {
+                    return ByteImage.read(stream);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return null;
+    }
 
-                                    if (zoom >= 1.0f) {
-                                        texture.image = painting.texture.image;
-                                        return;
-                                    }
+    // derives every level from the next larger one in a single pass instead of resizing the full image per level
+    private static Map<Painting.Type, ByteImage> generateLods(Identifier i, Painting painting) {
+        Map<Painting.Type, ByteImage> levels = new EnumMap<>(Painting.Type.class);
+        synchronized (painting) {
+            ByteImage image = getImage(i, painting, Painting.Type.FULL);
+            if (image == null) {
+                return levels;
+            }
 
-                                    w = (int)(image.getWidth() * zoom);
-                                    h = (int)(image.getHeight() * zoom);
-                                } else if (type == Painting.Type.HALF) {
-                                    w = image.getWidth() / 2;
-                                    h = image.getHeight() / 2;
-                                } else if (type == Painting.Type.QUARTER) {
-                                    w = image.getWidth() / 4;
-                                    h = image.getHeight() / 4;
-                                } else {
-                                    w = image.getWidth() / 8;
-                                    h = image.getHeight() / 8;
-                                }
+            List<ByteImage> chain = ImageManipulations.mipChain(image, 3);
+            Painting.Type[] types = {Painting.Type.HALF, Painting.Type.QUARTER, Painting.Type.EIGHTH};
+            for (int level = 0; level < types.length; level++) {
+                levels.put(types[level], chain.get(Math.min(level + 1, chain.size() - 1)));
+            }
 
-                                ByteImage target = new ByteImage(w, h);
-                                ImageManipulations.resize(target, image, (double)image.getWidth() / w, 0, 0);
+            int size = Config.getInstance().thumbnailSize;
+            levels.put(Painting.Type.THUMBNAIL, ImageManipulations.fit(chain, size, size));
 
-                                texture.image = target;
-                            });
+            for (Map.Entry<Painting.Type, ByteImage> entry : levels.entrySet()) {
+                imageCache.put(new ImageKey(i, entry.getKey()), entry.getValue());
+            }
         }
+        return levels;
+    }
 
-        return texture.image;
+    // pre-warms all levels of a freshly registered painting
+    public static void generateLodsAsync(Identifier i, Painting painting) {
+        imageExecutor.execute(() -> {
+            try {
+                generateLods(i, painting);
+            } catch (Exception e) {
+                Main.LOGGER.error("Failed to generate LODs for {}", i, e);
+            }
+        });
+    }
+
+    public record ImageKey(Identifier identifier, Painting.Type type) {
     }
 
     public static class CustomServerPaintings extends PersistentState {
         final Map<Identifier, Painting> customServerPaintings = new HashMap<>();
+        // paintings per stored image, kept in step with the map above so releasing one is constant time
+        private final Map<String, Integer> references = new HashMap<>();
 
         public static CustomServerPaintings fromNbt(NbtCompound nbt) {
             CustomServerPaintings c = new CustomServerPaintings();
             for (String key : nbt.getKeys()) {
-                c.customServerPaintings.put(new Identifier(key), Painting.fromNbt(nbt.getCompound(key)));
+                c.put(new Identifier(key), Painting.fromNbt(nbt.getCompound(key)));
             }
             return c;
         }
 
+        Painting put(Identifier identifier, Painting painting) {
+            Painting previous = customServerPaintings.put(identifier, painting);
+            references.merge(painting.hash, 1, Integer::sum);
+            if (previous != null) {
+                dereference(previous.hash);
+            }
+            return previous;
+        }
+
+        Painting remove(Identifier identifier) {
+            Painting painting = customServerPaintings.remove(identifier);
+            if (painting != null) {
+                dereference(painting.hash);
+            }
+            return painting;
+        }
+
+        private void dereference(String hash) {
+            references.computeIfPresent(hash, (k, v) -> v > 1 ? v - 1 : null);
+        }
+
+        int getReferences(String hash) {
+            return references.getOrDefault(hash, 0);
+        }
+
         @Override
         public NbtCompound writeNbt(NbtCompound nbt) {
             NbtCompound c = new NbtCompound();
@@ -140,8 +372,9 @@ public class ServerPaintingManager {
             return c;
         }
 
+        // changes go through put and remove, which maintain the reference counts
         public Map<Identifier, Painting> getCustomServerPaintings() {
-            return customServerPaintings;
+            return Collections.unmodifiableMap(customServerPaintings);
         }
     }
 }
@@ -0,0 +1,243 @@
+package immersive_paintings.util;
+
+import immersive_paintings.resources.ByteImage;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class ImageCompression {
+    private static final int MAX_PALETTE_SIZE = 256;
+
+    public enum Format {
+        // raw row-major RGB, as stored in ByteImage
+        RAW,
+        // RGB with a per channel left-neighbour delta, deflated
+        DEFLATE,
+        // palette followed by one index byte per pixel, deflated, which collapses runs of equal colors
+        PALETTE
+    }
+
+    public record Payload(Format format, int width, int height, byte[] data) {
+    }
+
+    public static Payload encode(ByteImage image, boolean compress) {
+        if (!compress) {
+            return new Payload(Format.RAW, image.getWidth(), image.getHeight(), image.getBytes());
+        }
+
+        int[] palette = findPalette(image);
+        if (palette != null) {
+            return new Payload(Format.PALETTE, image.getWidth(), image.getHeight(), encodePalette(image, palette));
+        } else {
+            return new Payload(Format.DEFLATE, image.getWidth(), image.getHeight(), deflate(filter(image)));
+        }
+    }
+
+    public static ByteImage decode(Payload payload) throws IOException {
+        int width = payload.width();
+        int height = payload.height();
+        byte[] data = payload.data();
+        return switch (payload.format()) {
+            case RAW -> {
+                if (data.length != width * height * 3) {
+                    throw new IOException("Unexpected image size");
+                }
+                yield new ByteImage(data, width, height);
+            }
+            case DEFLATE -> {
+                byte[] bytes = new byte[width * height * 3];
+                if (inflate(data, bytes) != bytes.length) {
+                    throw new IOException("Unexpected image size");
+                }
+                unfilter(bytes, width);
+                yield new ByteImage(bytes, width, height);
+            }
+            case PALETTE -> decodePalette(data, width, height);
+        };
+    }
+
+    // decodes into ABGR ints as used by NativeImage, palette images skip the intermediate RGB buffer
+    public static void decodeABGR(Payload payload, IntBuffer target) throws IOException {
+        int width = payload.width();
+        int height = payload.height();
+        int[] row = new int[width];
+        if (payload.format() == Format.PALETTE) {
+            byte[] raw = inflatePalette(payload.data(), width * height);
+            int[] palette = new int[(raw[0] & 0xFF) + 1];
+            for (int i = 0; i < palette.length; i++) {
+                int c = 1 + i * 3;
+                palette[i] = 0xff000000 | (raw[c] & 0xFF) | ((raw[c + 1] & 0xFF) << 8) | ((raw[c + 2] & 0xFF) << 16);
+            }
+            int p = 1 + palette.length * 3;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    row[x] = palette[raw[p++] & 0xFF];
+                }
+                target.put(row);
+            }
+        } else {
+            ByteImage image = decode(payload);
+            for (int y = 0; y < height; y++) {
+                image.getABGR(0, y, width, 1, row, 0, width);
+                target.put(row);
+            }
+        }
+    }
+
+    // returns the distinct colors, or null if there are too many for a palette
+    private static int[] findPalette(ByteImage image) {
+        int[] table = new int[MAX_PALETTE_SIZE * 4];
+        Arrays.fill(table, -1);
+        int[] palette = new int[MAX_PALETTE_SIZE];
+        int size = 0;
+
+        byte[] bytes = image.getBytes();
+        for (int i = 0; i < bytes.length; i += 3) {
+            int color = ((bytes[i] & 0xFF) << 16) | ((bytes[i + 1] & 0xFF) << 8) | (bytes[i + 2] & 0xFF);
+            int slot = lookup(table, color);
+            if (table[slot] < 0) {
+                if (size == MAX_PALETTE_SIZE) {
+                    return null;
+                }
+                table[slot] = color;
+                palette[size++] = color;
+            }
+        }
+
+        return Arrays.copyOf(palette, size);
+    }
+
+    // open addressing on a table sized to stay sparse even when the palette is full
+    private static int lookup(int[] table, int color) {
+        int slot = (color * 0x9E3779B1) >>> 22;
+        while (table[slot] >= 0 && table[slot] != color) {
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return slot;
+    }
+
+    private static byte[] encodePalette(ByteImage image, int[] palette) {
+        int[] table = new int[MAX_PALETTE_SIZE * 4];
+        byte[] index = new byte[table.length];
+        Arrays.fill(table, -1);
+        for (int i = 0; i < palette.length; i++) {
+            int slot = lookup(table, palette[i]);
+            table[slot] = palette[i];
+            index[slot] = (byte)i;
+        }
+
+        byte[] bytes = image.getBytes();
+        int pixels = bytes.length / 3;
+        byte[] raw = new byte[1 + palette.length * 3 + pixels];
+        raw[0] = (byte)(palette.length - 1);
+        int p = 1;
+        for (int color : palette) {
+            raw[p++] = (byte)(color >> 16);
+            raw[p++] = (byte)(color >> 8);
+            raw[p++] = (byte)color;
+        }
+        for (int i = 0; i < bytes.length; i += 3) {
+            int color = ((bytes[i] & 0xFF) << 16) | ((bytes[i + 1] & 0xFF) << 8) | (bytes[i + 2] & 0xFF);
+            raw[p++] = index[lookup(table, color)];
+        }
+        return deflate(raw);
+    }
+
+    private static byte[] inflatePalette(byte[] data, int pixels) throws IOException {
+        byte[] raw = new byte[1 + MAX_PALETTE_SIZE * 3 + pixels];
+        int length = inflate(data, raw);
+        int size = (raw[0] & 0xFF) + 1;
+        if (length != 1 + size * 3 + pixels) {
+            throw new IOException("Unexpected image size");
+        }
+        return raw;
+    }
+
+    private static ByteImage decodePalette(byte[] data, int width, int height) throws IOException {
+        int pixels = width * height;
+        byte[] raw = inflatePalette(data, pixels);
+        int size = (raw[0] & 0xFF) + 1;
+
+        ByteImage image = new ByteImage(width, height);
+        byte[] bytes = image.getBytes();
+        int p = 1 + size * 3;
+        for (int i = 0; i < pixels; i++) {
+            int c = 1 + (raw[p++] & 0xFF) * 3;
+            bytes[i * 3] = raw[c];
+            bytes[i * 3 + 1] = raw[c + 1];
+            bytes[i * 3 + 2] = raw[c + 2];
+        }
+        return image;
+    }
+
+    private static byte[] filter(ByteImage image) {
+        byte[] bytes = image.getBytes();
+        byte[] filtered = new byte[bytes.length];
+        int stride = image.getWidth() * 3;
+        for (int row = 0; row < bytes.length; row += stride) {
+            System.arraycopy(bytes, row, filtered, row, Math.min(3, stride));
+            for (int i = row + 3; i < row + stride; i++) {
+                filtered[i] = (byte)(bytes[i] - bytes[i - 3]);
+            }
+        }
+        return filtered;
+    }
+
+    private static void unfilter(byte[] bytes, int width) {
+        int stride = width * 3;
+        for (int row = 0; row < bytes.length; row += stride) {
+            for (int i = row + 3; i < row + stride; i++) {
+                bytes[i] = (byte)(bytes[i] + bytes[i - 3]);
+            }
+        }
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(bytes);
+        deflater.finish();
+        byte[] buffer = new byte[Math.max(64, bytes.length / 4)];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+        deflater.end();
+        return Arrays.copyOf(buffer, length);
+    }
+
+    // inflates into a preallocated target, fails if the data would not fit
+    private static int inflate(byte[] data, byte[] target) throws IOException {
+        Inflater inflater = new Inflater();
+        inflater.setInput(data);
+        try {
+            int length = 0;
+            while (!inflater.finished()) {
+                int read;
+                if (length == target.length) {
+                    read = inflater.inflate(new byte[1]);
+                    if (read > 0) {
+                        throw new IOException("Image data exceeds expected size");
+                    }
+                } else {
+                    read = inflater.inflate(target, length, target.length - length);
+                    length += read;
+                }
+                if (read == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated image data");
+                }
+            }
+            return length;
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -2,14 +2,19 @@ package immersive_paintings.util;
 
 import immersive_paintings.resources.ByteImage;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class ImageManipulations {
     public static int scanForPixelArtMultiple(ByteImage image) {
         int[] hist = new int[64];
+        int[] row = new int[image.getWidth()];
         for (int y = 0; y < image.getHeight(); y += 7) {
+            image.getARGB(0, y, image.getWidth(), 1, row, 0, row.length);
             int l = 0;
             int lastColor = 0;
             for (int x = 0; x < image.getWidth(); x++) {
-                int color = image.getARGB(x, y);
+                int color = row[x];
                 if (x == 0 || lastColor == color) {
                     l++;
                 } else {
@@ -35,18 +40,25 @@ public class ImageManipulations {
     }
 
     public static void resize(ByteImage image, ByteImage source, double zoom, int ox, int oy) {
-        for (int x = 0; x < image.getWidth(); x++) {
-            for (int y = 0; y < image.getHeight(); y++) {
+        byte[] bytes = source.getBytes();
+        byte[] target = image.getBytes();
+        int t = 0;
+        for (int y = 0; y < image.getHeight(); y++) {
+            int y0 = Math.max(0, (int)(oy + zoom * y));
+            double y1 = Math.min(source.getHeight() - 1, oy + zoom * (y + 1));
+            for (int x = 0; x < image.getWidth(); x++) {
+                int x0 = Math.max(0, (int)(ox + zoom * x));
+                double x1 = Math.min(source.getWidth() - 1, ox + zoom * (x + 1));
                 int red = 0, green = 0, blue = 0;
                 int samples = 0;
-                for (int px = Math.max(0, (int)(ox + zoom * x)); px < Math.min(source.getWidth() - 1, ox + zoom * (x + 1)); px++) {
-                    for (int py = Math.max(0, (int)(oy + zoom * y)); py < Math.min(source.getHeight() - 1, oy + zoom * (y + 1)); py++) {
-                        int index = source.getIndex(px, py);
-                        byte[] bytes = source.getBytes();
+                for (int py = y0; py < y1; py++) {
+                    int index = source.getIndex(x0, py);
+                    for (int px = x0; px < x1; px++) {
                         red += (bytes[index] & 0xFF);
                         green += (bytes[index + 1] & 0xFF);
                         blue += (bytes[index + 2] & 0xFF);
                         samples++;
+                        index += 3;
                     }
                 }
                 if (samples > 0) {
@@ -54,15 +66,73 @@ public class ImageManipulations {
                     green /= samples;
                     blue /= samples;
                 }
-                image.setPixel(x, y, red, green, blue);
+                target[t++] = (byte)red;
+                target[t++] = (byte)green;
+                target[t++] = (byte)blue;
+            }
+        }
+    }
+
+    // 2x2 box filter, odd trailing rows and columns are dropped the same way resize does
+    public static ByteImage halve(ByteImage source) {
+        int w = source.getWidth() / 2;
+        int h = source.getHeight() / 2;
+        ByteImage image = new ByteImage(w, h);
+        byte[] bytes = source.getBytes();
+        byte[] target = image.getBytes();
+        int stride = source.getWidth() * 3;
+        int t = 0;
+        for (int y = 0; y < h; y++) {
+            int a = source.getIndex(0, y * 2);
+            int b = a + stride;
+            for (int x = 0; x < w; x++) {
+                for (int c = 0; c < 3; c++) {
+                    target[t++] = (byte)(((bytes[a + c] & 0xFF) + (bytes[a + c + 3] & 0xFF) + (bytes[b + c] & 0xFF) + (bytes[b + c + 3] & 0xFF) + 2) >> 2);
+                }
+                a += 6;
+                b += 6;
             }
         }
+        return image;
+    }
+
+    // cascades 2x2 reductions, index 0 is the source itself, stops early once a dimension would reach zero
+    public static List<ByteImage> mipChain(ByteImage source, int levels) {
+        List<ByteImage> chain = new ArrayList<>(levels + 1);
+        chain.add(source);
+        ByteImage image = source;
+        for (int level = 0; level < levels && image.getWidth() >= 2 && image.getHeight() >= 2; level++) {
+            image = halve(image);
+            chain.add(image);
+        }
+        return chain;
+    }
+
+    // scales to fit into the given box, picking the smallest mip level still larger than the target
+    public static ByteImage fit(List<ByteImage> chain, int maxWidth, int maxHeight) {
+        ByteImage source = chain.get(0);
+        float zoom = Math.min((float)maxWidth / source.getWidth(), (float)maxHeight / source.getHeight());
+        if (zoom >= 1.0f) {
+            return source;
+        }
+
+        int w = Math.max(1, (int)(source.getWidth() * zoom));
+        int h = Math.max(1, (int)(source.getHeight() * zoom));
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            ByteImage level = chain.get(i);
+            if (level.getWidth() >= w && level.getHeight() >= h) {
+                ByteImage target = new ByteImage(w, h);
+                resize(target, level, (double)level.getWidth() / w, 0, 0);
+                return target;
+            }
+        }
+        return source;
     }
 
     public static void dither(ByteImage image, double dither) {
         float[] hsv = new float[3];
-        for (int x = 0; x < image.getWidth(); x++) {
-            for (int y = 0; y < image.getHeight(); y++) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
                 image.getHSV(hsv, x, y);
 
                 for (int i = 1; i < 3; i++) {
@@ -93,8 +163,8 @@ public class ImageManipulations {
         }
 
         // create histogram
-        for (int x = 0; x < image.getWidth(); x++) {
-            for (int y = 0; y < image.getHeight(); y++) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
                 image.getHSV(hsv, x, y);
 
                 for (int i = 0; i < 3; i++) {
@@ -131,8 +201,8 @@ public class ImageManipulations {
         }
 
         // assign to new bins
-        for (int x = 0; x < image.getWidth(); x++) {
-            for (int y = 0; y < image.getHeight(); y++) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
                 image.getHSV(hsv, x, y);
 
                 for (int channel = EXCLUDE_HUE; channel < 3; channel++) {
@@ -0,0 +1,76 @@
+package immersive_paintings.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+// least recently used cache bounded by the summed weight of its values rather than by count
+public class LruCache<K, V> {
+    private final LinkedHashMap<K, V> map = new LinkedHashMap<>(16, 0.75f, true);
+    private final ToLongFunction<V> weigher;
+    private final LongSupplier capacity;
+
+    private long weight;
+    private long hits;
+    private long misses;
+
+    public LruCache(ToLongFunction<V> weigher, LongSupplier capacity) {
+        this.weigher = weigher;
+        this.capacity = capacity;
+    }
+
+    public synchronized V get(K key) {
+        V value = map.get(key);
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    public synchronized void put(K key, V value) {
+        V previous = map.put(key, value);
+        if (previous != null) {
+            weight -= weigher.applyAsLong(previous);
+        }
+        weight += weigher.applyAsLong(value);
+
+        // the newest entry always stays, even if it alone exceeds the capacity
+        long limit = capacity.getAsLong();
+        Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+        while (weight > limit && map.size() > 1) {
+            Map.Entry<K, V> eldest = iterator.next();
+            weight -= weigher.applyAsLong(eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    public synchronized void removeIf(Predicate<K> predicate) {
+        Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, V> entry = iterator.next();
+            if (predicate.test(entry.getKey())) {
+                weight -= weigher.applyAsLong(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        weight = 0;
+    }
+
+    // size and hit rate since creation, for the periodic cache report
+    @Override
+    public synchronized String toString() {
+        long lookups = hits + misses;
+        double rate = lookups == 0 ? 0.0 : hits * 100.0 / lookups;
+        return String.format(Locale.ROOT, "%d entries, %.1f MB, %.1f%% hits of %d lookups", map.size(), weight / 1048576.0, rate, lookups);
+    }
+}
@@ -0,0 +1,252 @@
+package owens.oobjloader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Alternative to Builder which skips the object graph. The whole file
+// is scanned as bytes, numbers are parsed in place and faces are fan
+// triangulated into a FlatMesh. Identical position/texture/normal
+// combinations share one vertex.
+public class FlatBuilder {
+    private final byte[] data;
+    private int pos;
+
+    private float[] positions = new float[3 * 64];
+    private int positionCount;
+    private float[] textures = new float[2 * 64];
+    private int textureCount;
+    private float[] normals = new float[3 * 64];
+    private int normalCount;
+
+    private float[] vertices = new float[FlatMesh.STRIDE * 64];
+    private int vertexCount;
+    private int[] indices = new int[3 * 64];
+    private int indexCount;
+    private final Map<Long, Integer> vertexMap = new HashMap<>();
+
+    private int[] face = new int[16];
+
+    public int faceErrorCount = 0;
+
+    public FlatBuilder(InputStream stream) throws IOException {
+        this.data = stream.readAllBytes();
+        parse();
+    }
+
+    public FlatMesh build() {
+        return new FlatMesh(Arrays.copyOf(vertices, vertexCount * FlatMesh.STRIDE), Arrays.copyOf(indices, indexCount));
+    }
+
+    private void parse() {
+        while (pos < data.length) {
+            skipSpaces();
+            if (pos >= data.length) {
+                break;
+            }
+            byte c = data[pos];
+            byte next = pos + 1 < data.length ? data[pos + 1] : 0;
+            if (c == 'v' && isSpace(next)) {
+                pos++;
+                positions = ensure(positions, positionCount + 3);
+                positions[positionCount++] = parseFloat();
+                positions[positionCount++] = parseFloat();
+                positions[positionCount++] = parseFloat();
+            } else if (c == 'v' && next == 't') {
+                pos += 2;
+                textures = ensure(textures, textureCount + 2);
+                textures[textureCount++] = parseFloat();
+                textures[textureCount++] = parseFloat();
+            } else if (c == 'v' && next == 'n') {
+                pos += 2;
+                normals = ensure(normals, normalCount + 3);
+                normals[normalCount++] = parseFloat();
+                normals[normalCount++] = parseFloat();
+                normals[normalCount++] = parseFloat();
+            } else if (c == 'f' && isSpace(next)) {
+                pos++;
+                parseFace();
+            }
+            skipLine();
+        }
+    }
+
+    private void parseFace() {
+        int corners = 0;
+        boolean valid = true;
+        while (true) {
+            skipSpaces();
+            if (pos >= data.length || !isNumberStart(data[pos])) {
+                break;
+            }
+
+            int v = resolve(parseInt(), positionCount / 3);
+            int t = -1;
+            int n = -1;
+            if (pos < data.length && data[pos] == '/') {
+                pos++;
+                if (pos < data.length && data[pos] != '/') {
+                    t = resolve(parseInt(), textureCount / 2);
+                }
+                if (pos < data.length && data[pos] == '/') {
+                    pos++;
+                    n = resolve(parseInt(), normalCount / 3);
+                }
+            }
+
+            if (v < 0) {
+                valid = false;
+            }
+            if (corners == face.length) {
+                face = Arrays.copyOf(face, face.length * 2);
+            }
+            face[corners++] = valid ? getVertex(v, t, n) : 0;
+        }
+
+        if (!valid || corners < 3) {
+            faceErrorCount++;
+            return;
+        }
+
+        indices = ensure(indices, indexCount + (corners - 2) * 3);
+        for (int i = 1; i < corners - 1; i++) {
+            indices[indexCount++] = face[0];
+            indices[indexCount++] = face[i];
+            indices[indexCount++] = face[i + 1];
+        }
+    }
+
+    // one based and negative relative references to zero based, -1 if out of range
+    private static int resolve(int index, int count) {
+        int resolved = index < 0 ? count + index : index - 1;
+        return resolved >= 0 && resolved < count ? resolved : -1;
+    }
+
+    private int getVertex(int v, int t, int n) {
+        long key = ((long)v << 42) | ((long)(t + 1) << 21) | (n + 1);
+        Integer existing = vertexMap.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        vertices = ensure(vertices, (vertexCount + 1) * FlatMesh.STRIDE);
+        int o = vertexCount * FlatMesh.STRIDE;
+        vertices[o] = positions[v * 3];
+        vertices[o + 1] = positions[v * 3 + 1];
+        vertices[o + 2] = positions[v * 3 + 2];
+        if (t >= 0) {
+            vertices[o + 3] = textures[t * 2];
+            vertices[o + 4] = textures[t * 2 + 1];
+        }
+        if (n >= 0) {
+            vertices[o + 5] = normals[n * 3];
+            vertices[o + 6] = normals[n * 3 + 1];
+            vertices[o + 7] = normals[n * 3 + 2];
+        }
+        vertexMap.put(key, vertexCount);
+        return vertexCount++;
+    }
+
+    private int parseInt() {
+        boolean negative = false;
+        if (pos < data.length && (data[pos] == '-' || data[pos] == '+')) {
+            negative = data[pos] == '-';
+            pos++;
+        }
+        int value = 0;
+        while (pos < data.length && data[pos] >= '0' && data[pos] <= '9') {
+            value = value * 10 + (data[pos++] - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private float parseFloat() {
+        skipSpaces();
+        int start = pos;
+        boolean negative = false;
+        if (pos < data.length && (data[pos] == '-' || data[pos] == '+')) {
+            negative = data[pos] == '-';
+            pos++;
+        }
+
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        while (pos < data.length && data[pos] >= '0' && data[pos] <= '9') {
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (data[pos] - '0');
+                digits++;
+            } else {
+                exponent++;
+            }
+            pos++;
+        }
+        if (pos < data.length && data[pos] == '.') {
+            pos++;
+            while (pos < data.length && data[pos] >= '0' && data[pos] <= '9') {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (data[pos] - '0');
+                    digits++;
+                    exponent--;
+                }
+                pos++;
+            }
+        }
+        if (pos < data.length && (data[pos] == 'e' || data[pos] == 'E')) {
+            pos++;
+            exponent += parseInt();
+        }
+
+        // anything unusual, like nan or inf, goes the slow way
+        if (pos < data.length && !isSpace(data[pos]) && !isLineEnd(data[pos])) {
+            while (pos < data.length && !isSpace(data[pos]) && !isLineEnd(data[pos])) {
+                pos++;
+            }
+            try {
+                return Float.parseFloat(new String(data, start, pos - start));
+            } catch (NumberFormatException e) {
+                return 0.0f;
+            }
+        }
+
+        double value = exponent >= 0 ? mantissa * Math.pow(10, exponent) : mantissa / Math.pow(10, -exponent);
+        return (float)(negative ? -value : value);
+    }
+
+    private void skipSpaces() {
+        while (pos < data.length && isSpace(data[pos])) {
+            pos++;
+        }
+    }
+
+    private void skipLine() {
+        while (pos < data.length && !isLineEnd(data[pos])) {
+            pos++;
+        }
+        while (pos < data.length && isLineEnd(data[pos])) {
+            pos++;
+        }
+    }
+
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static boolean isLineEnd(byte c) {
+        return c == '\n' || c == '\r';
+    }
+
+    private static boolean isNumberStart(byte c) {
+        return (c >= '0' && c <= '9') || c == '-' || c == '+';
+    }
+
+    private static float[] ensure(float[] array, int size) {
+        return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+    }
+
+    private static int[] ensure(int[] array, int size) {
+        return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+    }
+}
@@ -0,0 +1,49 @@
+package owens.oobjloader;
+
+import java.util.Arrays;
+
+// Packed, triangulated mesh as produced by FlatBuilder. Each vertex
+// occupies STRIDE floats: x, y, z, u, v, nx, ny, nz. Indices reference
+// vertices and form triangles.
+public class FlatMesh {
+    public static final int STRIDE = 8;
+
+    public final float[] vertices;
+    public final int[] indices;
+
+    public FlatMesh(float[] vertices, int[] indices) {
+        this.vertices = vertices;
+        this.indices = indices;
+    }
+
+    public int getVertexCount() {
+        return vertices.length / STRIDE;
+    }
+
+    // Re-pairs the triangles of fan triangulated quads for quad based
+    // consumers. A lone triangle becomes a degenerate quad.
+    public int[] toQuadIndices() {
+        int[] quads = new int[indices.length / 3 * 4];
+        int size = 0;
+        int i = 0;
+        while (i + 2 < indices.length) {
+            int a = indices[i];
+            int b = indices[i + 1];
+            int c = indices[i + 2];
+            if (i + 5 < indices.length && indices[i + 3] == a && indices[i + 4] == c) {
+                quads[size++] = a;
+                quads[size++] = b;
+                quads[size++] = c;
+                quads[size++] = indices[i + 5];
+                i += 6;
+            } else {
+                quads[size++] = a;
+                quads[size++] = b;
+                quads[size++] = c;
+                quads[size++] = c;
+                i += 3;
+            }
+        }
+        return Arrays.copyOf(quads, size);
+    }
+}
@@ -5,9 +5,13 @@ import immersive_paintings.Renderer;
 import immersive_paintings.fabric.resources.FabricFrameLoader;
 import immersive_paintings.fabric.resources.FabricObjectLoader;
 import immersive_paintings.network.LazyNetworkManager;
+import immersive_paintings.resources.Cache;
+import immersive_paintings.resources.ClientCatalog;
+import immersive_paintings.resources.ClientPaintingManager;
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.resource.ResourceManagerHelper;
 import net.minecraft.resource.ResourceType;
 
@@ -15,11 +19,20 @@ public final class ClientFabric implements ClientModInitializer {
     @Override
     public void onInitializeClient() {
         ClientLifecycleEvents.CLIENT_STARTED.register((event) -> ClientMain.postLoad());
+        ClientLifecycleEvents.CLIENT_STOPPING.register((event) -> Cache.flush());
 
         ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(new FabricObjectLoader());
         ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(new FabricFrameLoader());
 
-        ClientTickEvents.START_CLIENT_TICK.register((server) -> LazyNetworkManager.tickClient());
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
+            ClientCatalog.disconnect();
+            Cache.flush();
+        });
+
+        ClientTickEvents.START_CLIENT_TICK.register((server) -> {
+            LazyNetworkManager.tickClient();
+            ClientPaintingManager.tick();
+        });
 
         Renderer.bootstrap();
     }
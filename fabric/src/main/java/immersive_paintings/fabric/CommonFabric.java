@@ -8,7 +8,8 @@ import immersive_paintings.fabric.cobalt.network.NetworkHandlerImpl;
 import immersive_paintings.fabric.cobalt.registration.RegistrationImpl;
 import immersive_paintings.fabric.resources.FabricPaintings;
 import immersive_paintings.network.LazyNetworkManager;
-import immersive_paintings.network.s2c.PaintingListMessage;
+import immersive_paintings.network.c2s.CatalogRequest;
+import immersive_paintings.network.s2c.CatalogHelloMessage;
 import immersive_paintings.resources.ServerPaintingManager;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
@@ -29,13 +30,22 @@ public final class CommonFabric implements ModInitializer {
 
         ResourceManagerHelper.get(ResourceType.SERVER_DATA).registerReloadListener(new FabricPaintings());
 
-        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) ->
-                NetworkHandler.sendToPlayer(new PaintingListMessage(), handler.player)
-        );
+        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
+            CatalogRequest.expect(handler.player);
+            NetworkHandler.sendToPlayer(new CatalogHelloMessage(ServerPaintingManager.getCatalog()), handler.player);
+        });
+
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            LazyNetworkManager.disconnect(handler.player);
+            CatalogRequest.forget(handler.player);
+        });
 
         ServerLifecycleEvents.SERVER_STARTED.register((server) -> ServerPaintingManager.server = server);
 
-        ServerTickEvents.START_SERVER_TICK.register((server) -> LazyNetworkManager.tickServer());
+        ServerTickEvents.START_SERVER_TICK.register((server) -> {
+            LazyNetworkManager.tickServer();
+            ServerPaintingManager.tick();
+        });
     }
 }
 
@@ -12,18 +12,20 @@ import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
 
+import java.util.function.Function;
+
 public class NetworkHandlerImpl extends NetworkHandler.Impl {
     @Override
-    public <T extends Message> void registerMessage(Class<T> msg) {
+    public <T extends Message> void registerMessage(Class<T> msg, Function<PacketByteBuf, T> decoder) {
         Identifier id = new Identifier(Main.MOD_ID, msg.getName().toLowerCase());
 
         ServerPlayNetworking.registerGlobalReceiver(id, (server, player, handler, buffer, responder) -> {
-            Message m = Message.decode(buffer);
+            Message m = decoder.apply(buffer);
             server.execute(() -> m.receive(player));
         });
 
         if (FabricLoader.getInstance().getEnvironmentType() == EnvType.CLIENT) {
-            ClientProxy.register(id, msg);
+            ClientProxy.register(id, decoder);
         }
     }
 
@@ -48,9 +50,9 @@ public class NetworkHandlerImpl extends NetworkHandler.Impl {
             throw new RuntimeException("new ClientProxy()");
         }
 
-        public static <T extends Message> void register(Identifier id, Class<T> msg) {
+        public static <T extends Message> void register(Identifier id, Function<PacketByteBuf, T> decoder) {
             ClientPlayNetworking.registerGlobalReceiver(id, (client, ignore1, buffer, ignore2) -> {
-                Message m = Message.decode(buffer);
+                Message m = decoder.apply(buffer);
                 client.execute(() -> m.receive(client.player));
             });
         }
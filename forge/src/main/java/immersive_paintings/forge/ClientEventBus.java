@@ -0,0 +1,18 @@
+package immersive_paintings.forge;
+
+import immersive_paintings.Main;
+import immersive_paintings.resources.Cache;
+import immersive_paintings.resources.ClientCatalog;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+@Mod.EventBusSubscriber(modid = Main.MOD_ID, value = Dist.CLIENT, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public class ClientEventBus {
+    @SubscribeEvent
+    public static void onLoggedOut(ClientPlayerNetworkEvent.LoggedOutEvent event) {
+        ClientCatalog.disconnect();
+        Cache.flush();
+    }
+}
@@ -4,7 +4,9 @@ import immersive_paintings.ClientMain;
 import immersive_paintings.Main;
 import immersive_paintings.cobalt.network.NetworkHandler;
 import immersive_paintings.network.LazyNetworkManager;
-import immersive_paintings.network.s2c.PaintingListMessage;
+import immersive_paintings.network.c2s.CatalogRequest;
+import immersive_paintings.network.s2c.CatalogHelloMessage;
+import immersive_paintings.resources.ClientPaintingManager;
 import immersive_paintings.resources.PaintingsLoader;
 import immersive_paintings.resources.ServerPaintingManager;
 import net.minecraft.server.network.ServerPlayerEntity;
@@ -19,18 +21,37 @@ import net.minecraftforge.fml.common.Mod;
 public class EventBus {
     @SubscribeEvent
     public static void onServerTick(TickEvent.ServerTickEvent event) {
+        // the byte budgets refill per call, so only one phase may tick them
+        if (event.phase != TickEvent.Phase.START) {
+            return;
+        }
         LazyNetworkManager.tickServer();
+        ServerPaintingManager.tick();
     }
 
     @SubscribeEvent
     public static void onClientTick(TickEvent.ClientTickEvent event) {
+        // fired for both phases, fabric ticks at the start only
+        if (event.phase != TickEvent.Phase.START) {
+            return;
+        }
         LazyNetworkManager.tickClient();
+        ClientPaintingManager.tick();
     }
 
     @SubscribeEvent
     public static void onPlayerLoggedInEvent(PlayerEvent.PlayerLoggedInEvent event) {
         if (!event.getPlayer().world.isClient) {
-            NetworkHandler.sendToPlayer(new PaintingListMessage(), (ServerPlayerEntity)event.getPlayer());
+            CatalogRequest.expect((ServerPlayerEntity)event.getPlayer());
+            NetworkHandler.sendToPlayer(new CatalogHelloMessage(ServerPaintingManager.getCatalog()), (ServerPlayerEntity)event.getPlayer());
+        }
+    }
+
+    @SubscribeEvent
+    public static void onPlayerLoggedOutEvent(PlayerEvent.PlayerLoggedOutEvent event) {
+        if (!event.getPlayer().world.isClient) {
+            LazyNetworkManager.disconnect((ServerPlayerEntity)event.getPlayer());
+            CatalogRequest.forget((ServerPlayerEntity)event.getPlayer());
         }
     }
 
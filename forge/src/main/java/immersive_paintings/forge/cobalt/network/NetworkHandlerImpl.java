@@ -3,14 +3,17 @@ package immersive_paintings.forge.cobalt.network;
 import immersive_paintings.Main;
 import immersive_paintings.cobalt.network.Message;
 import immersive_paintings.cobalt.network.NetworkHandler;
+import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
 import net.minecraftforge.network.NetworkRegistry;
 import net.minecraftforge.network.PacketDistributor;
 import net.minecraftforge.network.simple.SimpleChannel;
 
+import java.util.function.Function;
+
 public class NetworkHandlerImpl extends NetworkHandler.Impl {
-    private final String PROTOCOL_VERSION = "1";
+    private final String PROTOCOL_VERSION = "2";
     private final SimpleChannel channel = NetworkRegistry.newSimpleChannel(
             new Identifier(Main.MOD_ID, "main"),
             () -> PROTOCOL_VERSION,
@@ -19,12 +22,11 @@ public class NetworkHandlerImpl extends NetworkHandler.Impl {
     );
     private int id = 0;
 
-    @SuppressWarnings("unchecked")
     @Override
-    public <T extends Message> void registerMessage(Class<T> msg) {
+    public <T extends Message> void registerMessage(Class<T> msg, Function<PacketByteBuf, T> decoder) {
         channel.registerMessage(id++, msg,
                 Message::encode,
-                b -> (T) Message.decode(b),
+                decoder,
                 (m, ctx) -> {
                     ctx.get().enqueueWork(() -> {
                         ServerPlayerEntity sender = ctx.get().getSender();